@@ -0,0 +1,332 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Comment;
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes synthetic reporters, projects, versions, reports and comments straight into
+ * the bugrap database with batched inserts. Reports and comments are spread over the
+ * projects, versions and reporters already there.
+ * <p>
+ * Ids are taken from the same table sequence the repository uses, by moving
+ * {@code SEQ_GEN} past the generated rows, so entities saved later through the
+ * repository never collide with generated ones.
+ */
+final class DataGenerator {
+
+    static final int BATCH_SIZE = 1_000;
+
+    private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetuer adipiscing elit sed posuere "
+            + "interdum sem quisque ligula eros ullamcorper quis lacinia facilisis sapien mauris varius diam vitae "
+            + "arcu lectus auctor venenatis eget velit augue orci tincidunt eleifend nec lacus donec ultricies nisl "
+            + "crash exception layout grid button upload timeout memory session window").split(" ");
+
+    private static final String INSERT_REPORT = "INSERT INTO REPORT (ID, CONSISTENCYVERSION, DESCRIPTION, PRIORITY,"
+            + " REPORTED, STATUS, SUMMARY, TIMESTAMP, TYPE, ASSIGNED_ID, AUTHOR_ID, OCCURSIN_ID, PROJECT_ID,"
+            + " VERSION_ID, COMMENTCOUNT) VALUES (?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, ?, ?, 0)";
+
+    private static final String INSERT_COMMENT = "INSERT INTO COMMENT (ID, CONSISTENCYVERSION, COMMENT, TIMESTAMP,"
+            + " TYPE, AUTHOR_ID, REPORT_ID, ATTACHMENTNAME, ATTACHMENTHASH, ATTACHMENTSIZE)"
+            + " VALUES (?, 1, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_REPORTER = "INSERT INTO REPORTER (ID, ADMIN, CONSISTENCYVERSION, EMAIL, NAME,"
+            + " PASSWORD) VALUES (?, FALSE, 1, ?, ?, ?)";
+
+    private static final String INSERT_PROJECT = "INSERT INTO PROJECT (ID, CONSISTENCYVERSION, NAME, MANAGER_ID)"
+            + " VALUES (?, 1, ?, ?)";
+
+    private static final String INSERT_VERSION = "INSERT INTO PROJECTVERSION (ID, CLOSED, CONSISTENCYVERSION,"
+            + " RELEASEDATE, VERSION, PROJECT_ID) VALUES (?, FALSE, 1, ?, ?, ?)";
+
+    private final ConnectionPool connectionPool;
+    private final Random random;
+
+    DataGenerator(ConnectionPool connectionPool, long seed) {
+        this.connectionPool = connectionPool;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Inserts reports over the existing project versions and reporters.
+     *
+     * @return the id of the first generated report; the others follow it
+     */
+    long generateReports(int count) {
+        List<long[]> versions = findVersions();
+        List<Long> reporters = findReporterIds();
+        long firstId = allocateIds(count);
+        long now = System.currentTimeMillis();
+
+        connectionPool.execute(connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_REPORT)) {
+                for (int i = 0; i < count; i++) {
+                    long[] version = versions.get(random.nextInt(versions.size()));
+                    Timestamp reported = new Timestamp(now - (long) random.nextInt(365 * 24 * 60) * 60_000);
+
+                    insert.setLong(1, firstId + i);
+                    insert.setString(2, words(40));
+                    insert.setInt(3, random.nextInt(Report.Priority.values().length));
+                    insert.setTimestamp(4, reported);
+                    // About a third of the reports have no status, which counts as open
+                    if (random.nextInt(3) == 0) {
+                        insert.setNull(5, Types.INTEGER);
+                    } else {
+                        insert.setInt(5, random.nextInt(Report.Status.values().length));
+                    }
+                    insert.setString(6, words(6));
+                    insert.setTimestamp(7, reported);
+                    insert.setInt(8, random.nextInt(Report.Type.values().length));
+                    if (random.nextInt(4) == 0) {
+                        insert.setNull(9, Types.BIGINT);
+                    } else {
+                        insert.setLong(9, reporters.get(random.nextInt(reporters.size())));
+                    }
+                    insert.setLong(10, reporters.get(random.nextInt(reporters.size())));
+                    insert.setLong(11, version[1]);
+                    insert.setLong(12, version[0]);
+                    insert.addBatch();
+
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return null;
+        });
+        return firstId;
+    }
+
+    /**
+     * Inserts comments on one report and updates its comment count.
+     */
+    void generateComments(long reportId, int count) {
+        generateComments(reportId, reportId, count, 0, 0, null);
+    }
+
+    /**
+     * Inserts comments on every report with an id in the given range, between none and
+     * twice {@code averagePerReport} per report, and recounts the comments of those
+     * reports.
+     *
+     * @param attachmentRatio share of comments that get an attachment
+     * @param attachmentSize  average attachment size in bytes
+     * @param store           where attachment contents go, or {@code null} for none
+     * @return the number of comments inserted
+     */
+    long generateComments(long firstReportId, long lastReportId, int averagePerReport,
+                          double attachmentRatio, int attachmentSize, AttachmentStore store) {
+        int reportCount = (int) (lastReportId - firstReportId + 1);
+        int[] perReport = new int[reportCount];
+        long total = 0;
+        for (int i = 0; i < reportCount; i++) {
+            perReport[i] = firstReportId == lastReportId ? averagePerReport : random.nextInt(2 * averagePerReport + 1);
+            total += perReport[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        List<Long> reporters = findReporterIds();
+        long firstId = allocateIds(Math.toIntExact(total));
+        long now = System.currentTimeMillis();
+
+        connectionPool.execute(connection -> {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_COMMENT)) {
+                long id = firstId;
+                for (int report = 0; report < reportCount; report++) {
+                    for (int i = 0; i < perReport[report]; i++) {
+                        insert.setLong(1, id);
+                        insert.setString(2, words(20));
+                        insert.setTimestamp(3, new Timestamp(now - (long) (perReport[report] - i) * 60_000));
+                        insert.setInt(4, Comment.Type.COMMENT.ordinal());
+                        insert.setLong(5, reporters.get(random.nextInt(reporters.size())));
+                        insert.setLong(6, firstReportId + report);
+
+                        if (store != null && random.nextDouble() < attachmentRatio) {
+                            AttachmentStore.StoredBlob blob = storeAttachment(store, attachmentSize);
+                            insert.setString(7, "attachment-" + id + ".bin");
+                            insert.setString(8, blob.getHash());
+                            insert.setLong(9, blob.getSize());
+                        } else {
+                            insert.setNull(7, Types.VARCHAR);
+                            insert.setNull(8, Types.VARCHAR);
+                            insert.setNull(9, Types.BIGINT);
+                        }
+                        insert.addBatch();
+
+                        if (++id % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                            connection.commit();
+                        }
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+
+            try (PreparedStatement update = connection.prepareStatement("UPDATE REPORT SET COMMENTCOUNT ="
+                    + " (SELECT COUNT(*) FROM COMMENT C WHERE C.REPORT_ID = REPORT.ID) WHERE ID BETWEEN ? AND ?")) {
+                update.setLong(1, firstReportId);
+                update.setLong(2, lastReportId);
+                update.executeUpdate();
+            }
+            return null;
+        });
+        return total;
+    }
+
+    /**
+     * Inserts reporters named {@code user<n>} with e-mail {@code user<n>@example.com}.
+     *
+     * @return the id of the first generated reporter; the others follow it
+     */
+    long generateReporters(int count) {
+        long firstId = allocateIds(count);
+
+        connectionPool.executeInTransaction(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_REPORTER)) {
+                for (int i = 0; i < count; i++) {
+                    long id = firstId + i;
+                    insert.setLong(1, id);
+                    insert.setString(2, "user" + id + "@example.com");
+                    insert.setString(3, "user" + id);
+                    insert.setString(4, "user" + id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            return null;
+        });
+        return firstId;
+    }
+
+    /**
+     * Inserts projects managed by random reporters, each with its versions.
+     */
+    void generateProjects(int count, int versionsPerProject) {
+        List<Long> reporters = findReporterIds();
+        long firstProjectId = allocateIds(count);
+        long firstVersionId = allocateIds(count * versionsPerProject);
+        long now = System.currentTimeMillis();
+
+        connectionPool.executeInTransaction(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_PROJECT)) {
+                for (int i = 0; i < count; i++) {
+                    insert.setLong(1, firstProjectId + i);
+                    insert.setString(2, "Project " + (firstProjectId + i));
+                    insert.setLong(3, reporters.get(random.nextInt(reporters.size())));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_VERSION)) {
+                for (int i = 0; i < count * versionsPerProject; i++) {
+                    insert.setLong(1, firstVersionId + i);
+                    insert.setTimestamp(2, new Timestamp(now + (long) (i % versionsPerProject) * 30 * 24 * 3_600_000));
+                    insert.setString(3, "1." + (i % versionsPerProject));
+                    insert.setLong(4, firstProjectId + i / versionsPerProject);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    private AttachmentStore.StoredBlob storeAttachment(AttachmentStore store, int averageSize) {
+        byte[] content = new byte[averageSize / 2 + random.nextInt(averageSize + 1)];
+        random.nextBytes(content);
+        try {
+            return store.store(new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Moves the id sequence past {@code count} ids and returns the first of them.
+     */
+    long allocateIds(int count) {
+        return connectionPool.executeInTransaction(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE SEQUENCE SET SEQ_COUNT = SEQ_COUNT + ? WHERE SEQ_NAME = 'SEQ_GEN'")) {
+                update.setLong(1, count);
+                update.executeUpdate();
+            }
+            try (Statement select = connection.createStatement();
+                 ResultSet resultSet = select.executeQuery("SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN'")) {
+                resultSet.next();
+                return resultSet.getLong(1) - count + 1;
+            }
+        });
+    }
+
+    /**
+     * @return {id, project id} of every project version
+     */
+    private List<long[]> findVersions() {
+        return connectionPool.execute(connection -> {
+            List<long[]> versions = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT ID, PROJECT_ID FROM PROJECTVERSION")) {
+                while (resultSet.next()) {
+                    versions.add(new long[]{resultSet.getLong(1), resultSet.getLong(2)});
+                }
+            }
+            return requireRows(versions, "project versions");
+        });
+    }
+
+    private List<Long> findReporterIds() {
+        return connectionPool.execute(connection -> {
+            List<Long> reporters = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT ID FROM REPORTER")) {
+                while (resultSet.next()) {
+                    reporters.add(resultSet.getLong(1));
+                }
+            }
+            return requireRows(reporters, "reporters");
+        });
+    }
+
+    private static <T> List<T> requireRows(List<T> rows, String what) throws SQLException {
+        if (rows.isEmpty()) {
+            throw new SQLException("The database has no " + what + " to generate data for");
+        }
+        return rows;
+    }
+
+    private String words(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
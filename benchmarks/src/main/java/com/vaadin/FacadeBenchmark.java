@@ -0,0 +1,125 @@
+package com.vaadin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.bugrap.domain.entities.Comment;
+import org.vaadin.bugrap.domain.entities.Project;
+import org.vaadin.bugrap.domain.entities.ProjectVersion;
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the data access methods of the {@link MyUI} facade against a database
+ * seeded with a growing number of reports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FacadeBenchmark {
+
+    private static final int COMMENTS_ON_SAMPLE_REPORT = 50;
+
+    @Param({"1000", "100000", "1000000"})
+    int reports;
+
+    private Path dbDirectory;
+    private Backend backend;
+    private MyUI facade;
+
+    private Project project;
+    private ProjectVersion version;
+    private Set<Report.Status> openStatuses;
+    private Report sampleReport;
+
+    @Setup(Level.Trial)
+    public void seedDatabase() throws IOException {
+        dbDirectory = Files.createTempDirectory("bugrap-benchmark");
+        backend = new Backend(dbDirectory.resolve("bugrap").toString(), Backend.DEFAULT_POOL_SIZE);
+        backend.start();
+
+        DataGenerator generator = new DataGenerator(backend.getConnectionPool(), 42);
+        long firstReportId = generator.generateReports(reports);
+        generator.generateComments(firstReportId, COMMENTS_ON_SAMPLE_REPORT);
+
+        facade = new MyUI(backend);
+        sampleReport = facade.getReportById(firstReportId);
+        project = sampleReport.getProject();
+        version = sampleReport.getVersion();
+        openStatuses = EnumSet.of(Report.Status.OPEN);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        backend.stop();
+        BenchmarkFiles.deleteQuietly(dbDirectory);
+    }
+
+    @Benchmark
+    public Set<Report> filterReportsByProject() {
+        return facade.filterReportsByProject(project, version, openStatuses);
+    }
+
+    @Benchmark
+    public List<Comment> getCommentsByReport() {
+        return facade.getCommentsByReport(sampleReport);
+    }
+
+    @Benchmark
+    public long countClosedReports() {
+        return facade.countClosedReports(project);
+    }
+
+    @Benchmark
+    public long countOpenedReports() {
+        return facade.countOpenedReports(version);
+    }
+
+    @Benchmark
+    public long countUnassignedReports() {
+        return facade.countUnassignedReports(project);
+    }
+
+    @Benchmark
+    public ReportStatistics getReportStatistics() {
+        return facade.getReportStatistics(project, version);
+    }
+
+    /**
+     * Moves the sample report to the next priority, the way the report detail saves a
+     * changed combo box.
+     */
+    @Benchmark
+    public ReportEditResult updateReports() {
+        Report.Priority[] priorities = Report.Priority.values();
+        Report.Priority priority = priorities[(sampleReport.getPriority().ordinal() + 1) % priorities.length];
+        ReportEdit edit = new ReportEdit(sampleReport, priority, sampleReport.getType(), sampleReport.getStatus(),
+                sampleReport.getAssigned(), sampleReport.getVersion());
+
+        ReportEditResult result = facade.updateReports(Collections.singleton(sampleReport), edit);
+        // The next edit starts from what was saved, so it does not conflict
+        sampleReport.setPriority(priority);
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package com.vaadin;
+
+import java.sql.Statement;
+
+/**
+ * Fills a bugrap database with synthetic data for load testing. The application must
+ * not be running against the same database at the time.
+ * <p>
+ * Options, with their defaults:
+ * <pre>
+ * --db /var/tmp/bugrap        database path, as bugrap.db.path of the application
+ * --reporters 100             reporters to add
+ * --projects 10               projects to add
+ * --versions 5                versions per added project
+ * --reports 100000            reports to add, over all projects
+ * --comments 3                average comments per added report
+ * --attachments 0.05          share of comments with an attachment
+ * --attachmentSize 65536      average attachment size in bytes
+ * --seed 42                   random seed, for repeatable data
+ * </pre>
+ */
+public class GenerateData {
+
+    public static void main(String[] args) {
+        Arguments arguments = new Arguments(args);
+        String dbPath = arguments.getString("db", Backend.DEFAULT_DB_PATH);
+        int reports = arguments.getInt("reports", 100_000);
+
+        Backend backend = new Backend(dbPath, 2);
+        backend.start();
+        try {
+            DataGenerator generator = new DataGenerator(backend.getConnectionPool(), arguments.getInt("seed", 42));
+            long started = System.nanoTime();
+
+            generator.generateReporters(arguments.getInt("reporters", 100));
+            generator.generateProjects(arguments.getInt("projects", 10), arguments.getInt("versions", 5));
+
+            long firstReportId = generator.generateReports(reports);
+            long lastReportId = firstReportId + reports - 1;
+            long comments = generator.generateComments(firstReportId, lastReportId, arguments.getInt("comments", 3),
+                    arguments.getDouble("attachments", 0.05), arguments.getInt("attachmentSize", 64 * 1024),
+                    backend.getAttachmentStore());
+
+            // Writes everything to the data files, so nothing is left in the write delay
+            backend.getConnectionPool().execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    return statement.execute("CHECKPOINT");
+                }
+            });
+
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Generated %d reports (ids %d-%d) and %d comments in %.1f s, %.0f rows/s%n",
+                    reports, firstReportId, lastReportId, comments, seconds, (reports + comments) / seconds);
+        } finally {
+            backend.stop();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.vaadin;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Statement;
+
+/**
+ * Imports a JSON Lines file into a bugrap database, see {@link ReportImporter} for the
+ * format. The application must not be running against the same database at the time.
+ * Running it again on the same file resumes after the last commit.
+ * <p>
+ * Options, with their defaults:
+ * <pre>
+ * --file                      the file to import, required
+ * --db /var/tmp/bugrap        database path, as bugrap.db.path of the application
+ * --batchSize 500             rows sent to the database at once
+ * --commitInterval 5000       rows between commits
+ * </pre>
+ */
+public class ImportReports {
+
+    public static void main(String[] args) throws IOException {
+        Arguments arguments = new Arguments(args);
+        String file = arguments.getString("file", null);
+        if (file == null) {
+            throw new IllegalArgumentException("--file is required");
+        }
+
+        Backend backend = new Backend(arguments.getString("db", Backend.DEFAULT_DB_PATH), 2);
+        backend.start();
+        try {
+            ReportImporter importer = new ReportImporter(backend,
+                    arguments.getInt("batchSize", ReportImporter.DEFAULT_BATCH_SIZE),
+                    arguments.getInt("commitInterval", ReportImporter.DEFAULT_COMMIT_INTERVAL));
+
+            long started = System.nanoTime();
+            ReportImporter.ImportSummary summary = importer.importFile(Paths.get(file), (done, total) ->
+                    System.out.printf("%d rows, %.0f rows/s%n", done, done / ((System.nanoTime() - started) / 1e9)));
+
+            // Writes everything to the data files, so nothing is left in the write delay
+            backend.getConnectionPool().execute(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    return statement.execute("CHECKPOINT");
+                }
+            });
+
+            System.out.println(summary);
+        } finally {
+            backend.stop();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.vaadin;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the latencies of named interactions from many threads and prints their
+ * percentiles.
+ */
+final class LatencyRecorder {
+
+    private final Map<String, Samples> samples = new TreeMap<>();
+
+    void record(String interaction, long nanos) {
+        samples(interaction).add(nanos);
+    }
+
+    void recordError(String interaction) {
+        samples(interaction).addError();
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %8s %7s %9s %9s %9s %9s %9s%n", "interaction", "count", "errors", "p50 ms", "p90 ms", "p95 ms", "p99 ms", "max ms");
+
+        synchronized (samples) {
+            samples.forEach((interaction, recorded) -> {
+                long[] sorted = recorded.sorted();
+                out.printf("%-16s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", interaction, sorted.length, recorded.errors,
+                        percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 95), percentile(sorted, 99),
+                        percentile(sorted, 100));
+            });
+        }
+    }
+
+    private Samples samples(String interaction) {
+        synchronized (samples) {
+            return samples.computeIfAbsent(interaction, key -> new Samples());
+        }
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds.
+     */
+    private static double percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        synchronized void addError() {
+            errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.vaadin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs simulated browser sessions against a running bugrap application, for example
+ * one started with {@code mvn jetty:run}, and prints latency percentiles per
+ * interaction.
+ * <p>
+ * A session speaks the same HTTP requests a browser would for opening the main page,
+ * opening a report in its own page, sending heartbeats and uploading an attachment in
+ * chunks. It does not render anything or follow up with further UIDL requests.
+ * <p>
+ * Options, with their defaults:
+ * <pre>
+ * --url http://localhost:8080/  application url
+ * --sessions 50                 concurrent sessions
+ * --duration 60                 seconds to run
+ * --rampUp 10                   seconds over which the sessions are started
+ * --think 1000                  milliseconds between the interactions of a session
+ * --reports 1-155               range of report ids to open, as printed by GenerateData
+ * --uploadSize 1048576          size of uploaded attachments in bytes
+ * --chunkSize 262144            size of an upload chunk in bytes
+ * </pre>
+ */
+public class LoadDriver {
+
+    private static final Pattern UI_ID = Pattern.compile("\"v-uiId\"\\s*:\\s*(\\d+)");
+
+    private final String url;
+    private final int thinkMillis;
+    private final long firstReportId;
+    private final long lastReportId;
+    private final int uploadSize;
+    private final int chunkSize;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    private LoadDriver(Arguments arguments) {
+        String baseUrl = arguments.getString("url", "http://localhost:8080/");
+        url = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        thinkMillis = arguments.getInt("think", 1000);
+        String[] reports = arguments.getString("reports", "1-155").split("-");
+        firstReportId = Long.parseLong(reports[0]);
+        lastReportId = Long.parseLong(reports[1]);
+        uploadSize = arguments.getInt("uploadSize", 1024 * 1024);
+        chunkSize = arguments.getInt("chunkSize", 256 * 1024);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Arguments arguments = new Arguments(args);
+        int sessions = arguments.getInt("sessions", 50);
+        long durationMillis = arguments.getInt("duration", 60) * 1000L;
+        long rampUpMillis = arguments.getInt("rampUp", 10) * 1000L;
+
+        LoadDriver driver = new LoadDriver(arguments);
+        long deadline = System.currentTimeMillis() + durationMillis;
+
+        ExecutorService executor = Executors.newFixedThreadPool(sessions);
+        for (int i = 0; i < sessions; i++) {
+            long startDelay = rampUpMillis * i / sessions;
+            long seed = i;
+            executor.execute(() -> driver.runSession(new Random(seed), startDelay, deadline));
+        }
+        executor.shutdown();
+        executor.awaitTermination(durationMillis + rampUpMillis + 60_000, TimeUnit.MILLISECONDS);
+
+        System.out.printf("%d sessions for %d s against %s%n", sessions, durationMillis / 1000, driver.url);
+        driver.recorder.print(System.out);
+    }
+
+    private void runSession(Random random, long startDelay, long deadline) {
+        try {
+            Thread.sleep(startDelay);
+            SimulatedSession session = new SimulatedSession();
+            int uiId = session.openUI("mainPage", url);
+
+            while (System.currentTimeMillis() < deadline) {
+                int action = random.nextInt(10);
+                if (action < 2) {
+                    uiId = session.openUI("mainPage", url);
+                } else if (action < 7) {
+                    long reportId = firstReportId + (long) (random.nextDouble() * (lastReportId - firstReportId + 1));
+                    session.openUI("openReport", url + "#!report/" + reportId);
+                } else if (action < 9) {
+                    session.heartbeat(uiId);
+                } else {
+                    session.upload(random);
+                }
+                Thread.sleep(thinkMillis / 2 + random.nextInt(thinkMillis + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One browser session, keeping its own session cookie.
+     */
+    private final class SimulatedSession {
+        private String cookie;
+
+        /**
+         * Loads the bootstrap page and initializes a UI the way the client engine does.
+         *
+         * @return the id of the new UI, or -1 if it failed
+         */
+        int openUI(String interaction, String location) {
+            long started = System.nanoTime();
+            try {
+                Response page = request("GET", url, null, null);
+                String form = "v-browserDetails=1&theme=mytheme&v-appId=ROOT&v-sh=1080&v-sw=1920&v-cw=1920&v-ch=1080"
+                        + "&v-curdate=" + System.currentTimeMillis() + "&v-tzo=0&v-dstd=0&v-rtzo=0&v-dston=false"
+                        + "&v-vw=1920&v-vh=1080&v-wn=load-" + System.nanoTime() + "&v-loc=" + encode(location);
+                Response init = request("POST", url + "?v-" + System.currentTimeMillis(), "application/x-www-form-urlencoded",
+                        form.getBytes(StandardCharsets.UTF_8));
+
+                Matcher uiId = UI_ID.matcher(init.body);
+                if (page.status != 200 || init.status != 200 || !uiId.find()) {
+                    recorder.recordError(interaction);
+                    return -1;
+                }
+                recorder.record(interaction, System.nanoTime() - started);
+                return Integer.parseInt(uiId.group(1));
+            } catch (IOException e) {
+                recorder.recordError(interaction);
+                return -1;
+            }
+        }
+
+        void heartbeat(int uiId) {
+            if (uiId < 0) {
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                Response response = request("POST", url + "HEARTBEAT/?v-uiId=" + uiId, null, new byte[0]);
+                if (response.status == 200) {
+                    recorder.record("heartbeat", System.nanoTime() - started);
+                } else {
+                    recorder.recordError("heartbeat");
+                }
+            } catch (IOException e) {
+                recorder.recordError("heartbeat");
+            }
+        }
+
+        void upload(Random random) {
+            byte[] content = new byte[uploadSize];
+            random.nextBytes(content);
+
+            long started = System.nanoTime();
+            try {
+                Response start = request("POST", url + ChunkedUploadHandler.PATH + "?name=load.bin", null, new byte[0]);
+                if (start.status != 201) {
+                    recorder.recordError("chunkedUpload");
+                    return;
+                }
+
+                String uploadUrl = url + ChunkedUploadHandler.PATH + "/" + start.body.trim();
+                for (int first = 0; first < content.length; first += chunkSize) {
+                    int last = Math.min(first + chunkSize, content.length) - 1;
+                    byte[] chunk = new byte[last - first + 1];
+                    System.arraycopy(content, first, chunk, 0, chunk.length);
+
+                    Response response = request("PUT", uploadUrl, "application/octet-stream", chunk,
+                            "bytes " + first + "-" + last + "/" + content.length);
+                    if (response.status != 308 && response.status != 201) {
+                        recorder.recordError("chunkedUpload");
+                        return;
+                    }
+                }
+                recorder.record("chunkedUpload", System.nanoTime() - started);
+            } catch (IOException e) {
+                recorder.recordError("chunkedUpload");
+            }
+        }
+
+        private Response request(String method, String target, String contentType, byte[] body) throws IOException {
+            return request(method, target, contentType, body, null);
+        }
+
+        private Response request(String method, String target, String contentType, byte[] body, String contentRange) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection();
+            connection.setRequestMethod(method);
+            connection.setInstanceFollowRedirects(false);
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            if (contentType != null) {
+                connection.setRequestProperty("Content-Type", contentType);
+            }
+            if (contentRange != null) {
+                connection.setRequestProperty("Content-Range", contentRange);
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            String setCookie = connection.getHeaderField("Set-Cookie");
+            if (setCookie != null) {
+                cookie = setCookie.split(";", 2)[0];
+            }
+
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            return new Response(status, in != null ? readFully(in) : "");
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.vaadin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures search-as-you-type queries against a {@link ReportSearchIndex} filled with
+ * synthetic reports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReportSearchIndexBenchmark {
+
+    private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetuer adipiscing elit sed posuere "
+            + "interdum sem quisque ligula eros ullamcorper quis lacinia facilisis sapien mauris varius diam vitae "
+            + "arcu lectus auctor venenatis eget velit augue orci tincidunt eleifend nec lacus donec ultricies nisl "
+            + "felis suspendisse potenti hendrerit mollis erat vehicula risus suscipit libero aliquam volutpat "
+            + "crash exception layout grid button upload timeout memory session window").split(" ");
+
+    @Param({"500000"})
+    int reports;
+
+    @Param({"cr", "grid lay", "lorem ipsum dolor"})
+    String query;
+
+    private ReportSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void fillIndex() {
+        Random random = new Random(42);
+        index = new ReportSearchIndex();
+
+        for (long id = 1; id <= reports; id++) {
+            index.addReport(id, words(random, 5), words(random, 60));
+            if (id % 3 == 0) {
+                index.addComment(id, words(random, 20));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return index.search(query, 1_000);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
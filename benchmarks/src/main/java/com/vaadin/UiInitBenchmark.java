@@ -0,0 +1,72 @@
+package com.vaadin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to initialize one more {@link MyUI} while a number of
+ * other UIs (sessions) are already open against the same shared {@link Backend}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UiInitBenchmark {
+
+    @Param({"1", "500"})
+    int sessions;
+
+    private Path dbDirectory;
+    private Backend backend;
+    private List<MyUI> openUIs;
+
+    @Setup(Level.Trial)
+    public void openSessions() throws IOException {
+        dbDirectory = Files.createTempDirectory("bugrap-benchmark");
+        backend = new Backend(dbDirectory.resolve("bugrap").toString(), Backend.DEFAULT_POOL_SIZE);
+        backend.start();
+
+        openUIs = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            openUIs.add(initUI());
+        }
+    }
+
+    @Benchmark
+    public MyUI initOneMoreUI() {
+        return initUI();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeSessions() {
+        openUIs.clear();
+        backend.stop();
+        BenchmarkFiles.deleteQuietly(dbDirectory);
+    }
+
+    private MyUI initUI() {
+        MyUI ui = new MyUI(backend);
+        ui.init(null);
+        return ui;
+    }
+}
@@ -0,0 +1,273 @@
+package com.vaadin;
+
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the attachments of comments on {@code GET attachment/<comment id>/<file name>}.
+ * The attachment is only looked up when it is downloaded, and nothing is kept in the
+ * session for it. The file name in the path only gives the browser a name to show; the
+ * response always uses the name stored with the comment.
+ * <p>
+ * The content of a stored blob never changes, so its hash is the ETag and responses may
+ * be cached for a year. Conditional requests are answered with 304, and a single
+ * {@code Range} is answered with 206 for resumed downloads. Blobs stored compressed are
+ * sent as they are to clients accepting gzip, with ranges over the compressed bytes.
+ * <p>
+ * One instance is shared by all sessions. Requests are handled without holding the
+ * session lock.
+ */
+public class AttachmentDownloadHandler implements RequestHandler {
+
+    static final String PATH = "attachment";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+    private static final Pattern REQUEST_PATH = Pattern.compile("/" + PATH + "/(\\d{1,18})/(.+)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+    private static final long[] UNSATISFIABLE = new long[0];
+    private static final String DEFAULT_FILE_NAME = "attachment";
+
+    private final Backend backend;
+
+    public AttachmentDownloadHandler(Backend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * @return the path of the attachment relative to the servlet
+     */
+    static String path(long commentId, String fileName) {
+        try {
+            return PATH + "/" + commentId + "/" + URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request, VaadinResponse response) throws IOException {
+        String path = request.getPathInfo();
+        if (path == null || !path.startsWith("/" + PATH + "/")) {
+            return false;
+        }
+
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            response.sendError(405, "Unsupported method " + method);
+            return true;
+        }
+
+        Matcher matcher = REQUEST_PATH.matcher(path);
+        AttachmentRow attachment = matcher.matches() ? backend.findAttachment(Long.parseLong(matcher.group(1))) : null;
+        if (attachment == null || !backend.getAttachmentStore().exists(attachment.getBlob().getHash())) {
+            response.sendError(404, "Attachment not found");
+            return true;
+        }
+
+        String fileName = attachment.getName() != null ? attachment.getName() : DEFAULT_FILE_NAME;
+        send(attachment.getBlob(), fileName, request, response, "HEAD".equals(method));
+        return true;
+    }
+
+    private void send(AttachmentStore.StoredBlob blob, String fileName, VaadinRequest request, VaadinResponse response,
+                      boolean headOnly) throws IOException {
+        AttachmentStore store = backend.getAttachmentStore();
+        String hash = blob.getHash();
+        boolean compressed = store.isCompressed(hash);
+        boolean gzip = compressed && acceptsGzip(request);
+
+        // The compressed bytes are another representation, with their own tag and ranges
+        String etag = "\"" + hash + (gzip ? "-gzip" : "") + "\"";
+        long lastModified = store.lastModified(hash);
+        long length = gzip ? store.storedSize(hash) : blob.getSize();
+
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", CACHE_CONTROL);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (compressed) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(304);
+            return;
+        }
+
+        long[] range = requestedRange(request, etag, lastModified, length);
+        if (range == UNSATISFIABLE) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(416, "Range not satisfiable");
+            return;
+        }
+
+        long first = 0;
+        long count = length;
+        if (range != null) {
+            first = range[0];
+            count = range[1] - range[0] + 1;
+            response.setStatus(206);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+        }
+
+        response.setContentType(mimeType(fileName));
+        response.setHeader("Content-Disposition", contentDisposition(fileName));
+        response.setHeader("Content-Length", String.valueOf(count));
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        if (headOnly) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (!compressed || gzip) {
+            store.transferTo(hash, first, count, Channels.newChannel(out));
+        } else {
+            copyUncompressed(store, hash, first, count, out);
+        }
+        out.flush();
+        backend.getMetrics().attachmentBytesSent(count);
+    }
+
+    private static void copyUncompressed(AttachmentStore store, String hash, long first, long count, OutputStream out) throws IOException {
+        try (InputStream content = store.openStream(hash)) {
+            long skipped = 0;
+            while (skipped < first) {
+                long n = content.skip(first - skipped);
+                if (n <= 0) {
+                    throw new IOException("Attachment " + hash + " ended before byte " + first);
+                }
+                skipped += n;
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = count;
+            int read;
+            while (remaining > 0 && (read = content.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    private static boolean notModified(VaadinRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Parses a single byte range. Several ranges, or an {@code If-Range} that no longer
+     * matches, get the whole attachment.
+     *
+     * @return the first and last byte requested, {@code null} for the whole attachment
+     * or {@link #UNSATISFIABLE}
+     */
+    private static long[] requestedRange(VaadinRequest request, String etag, long lastModified, long length) {
+        String range = request.getHeader("Range");
+        if (range == null) {
+            return null;
+        }
+
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange != null) {
+            boolean matches = ifRange.trim().startsWith("\"")
+                    ? ifRange.trim().equals(etag)
+                    : dateHeader(request, "If-Range") / 1000 == lastModified / 1000;
+            if (!matches) {
+                return null;
+            }
+        }
+
+        Matcher matcher = RANGE.matcher(range.trim());
+        if (!matcher.matches() || matcher.group(1).isEmpty() && matcher.group(2).isEmpty()) {
+            return null;
+        }
+
+        if (matcher.group(1).isEmpty()) {
+            // The last n bytes
+            long suffix = Long.parseLong(matcher.group(2));
+            if (suffix == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{Math.max(0, length - suffix), length - 1};
+        }
+
+        long first = Long.parseLong(matcher.group(1));
+        long last = matcher.group(2).isEmpty() ? length - 1 : Long.parseLong(matcher.group(2));
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        if (last < first) {
+            return null;
+        }
+        return new long[]{first, Math.min(last, length - 1)};
+    }
+
+    private static long dateHeader(VaadinRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Names the file with a quoted ASCII fallback, and with an RFC 5987
+     * {@code filename*} in UTF-8 when the name has other characters.
+     */
+    private static String contentDisposition(String fileName) {
+        String fallback = fileName.replaceAll("[^\\x20-\\x7e]|[\"\\\\]", "_");
+        String disposition = "attachment; filename=\"" + fallback + "\"";
+        return fallback.equals(fileName) ? disposition : disposition + "; filename*=UTF-8''" + percentEncode(fileName);
+    }
+
+    private static String percentEncode(String value) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || "!#$&+-.^_`|~".indexOf(c) >= 0) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String mimeType(String fileName) {
+        String mimeType = URLConnection.guessContentTypeFromName(fileName);
+        return mimeType != null ? mimeType : "application/octet-stream";
+    }
+
+    private static boolean acceptsGzip(VaadinRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+}
@@ -0,0 +1,24 @@
+package com.vaadin;
+
+/**
+ * The file name and stored blob of a comment attachment, read without loading the
+ * comment entity.
+ */
+public class AttachmentRow {
+
+    private final String name;
+    private final AttachmentStore.StoredBlob blob;
+
+    public AttachmentRow(String name, AttachmentStore.StoredBlob blob) {
+        this.name = name;
+        this.blob = blob;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AttachmentStore.StoredBlob getBlob() {
+        return blob;
+    }
+}
@@ -0,0 +1,263 @@
+package com.vaadin;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File system backed store of attachment contents, keyed by the SHA-256 hash of the
+ * content. Storing the same content twice keeps a single file.
+ * <p>
+ * Blobs are written through a {@link BlobWriter} that hashes while streaming into a
+ * temporary file, and optionally gzip compresses them. Compressed blobs are kept as
+ * {@code <hash>.gz} next to where the plain blob would be.
+ */
+public class AttachmentStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final Path root;
+    private final Path temporaryDirectory;
+    private final boolean compress;
+
+    public AttachmentStore(Path root, boolean compress) {
+        this.root = root;
+        this.temporaryDirectory = root.resolve("tmp");
+        this.compress = compress;
+
+        try {
+            Files.createDirectories(temporaryDirectory);
+        } catch (IOException e) {
+            throw new BackendException("Could not create attachment store in " + root, e);
+        }
+    }
+
+    public Path getTemporaryDirectory() {
+        return temporaryDirectory;
+    }
+
+    public BlobWriter newWriter() {
+        try {
+            return new BlobWriter(Files.createTempFile(temporaryDirectory, "blob-", ".tmp"));
+        } catch (IOException e) {
+            throw new BackendException("Could not create a temporary attachment file", e);
+        }
+    }
+
+    public StoredBlob store(InputStream content) throws IOException {
+        BlobWriter writer = newWriter();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                writer.write(buffer, 0, read);
+            }
+            return writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    public boolean exists(String hash) {
+        return locate(hash) != null;
+    }
+
+    public boolean isCompressed(String hash) {
+        Path path = locate(hash);
+        return path != null && path.getFileName().toString().endsWith(COMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Opens the uncompressed content of a blob.
+     */
+    public InputStream openStream(String hash) throws IOException {
+        Path path = require(hash);
+        InputStream stream = Files.newInputStream(path);
+        return isCompressed(hash) ? new GZIPInputStream(stream, BUFFER_SIZE) : stream;
+    }
+
+    /**
+     * Copies {@code count} bytes of the blob file as it is stored (compressed or not)
+     * starting at {@code position}, letting the file system move the bytes directly.
+     */
+    public void transferTo(String hash, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(require(hash), StandardOpenOption.READ)) {
+            long end = Math.min(position + count, channel.size());
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the blob file as it is stored.
+     */
+    public long storedSize(String hash) throws IOException {
+        return Files.size(require(hash));
+    }
+
+    /**
+     * Returns when the blob file was written, in milliseconds since the epoch.
+     */
+    public long lastModified(String hash) throws IOException {
+        return Files.getLastModifiedTime(require(hash)).toMillis();
+    }
+
+    private Path require(String hash) throws IOException {
+        Path path = locate(hash);
+        if (path == null) {
+            throw new IOException("No attachment with hash " + hash);
+        }
+        return path;
+    }
+
+    private Path locate(String hash) {
+        Path plain = pathOf(hash);
+        if (Files.exists(plain)) {
+            return plain;
+        }
+
+        Path compressed = plain.resolveSibling(plain.getFileName() + COMPRESSED_SUFFIX);
+        return Files.exists(compressed) ? compressed : null;
+    }
+
+    private Path pathOf(String hash) {
+        if (!hash.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Hash and uncompressed size of a stored blob.
+     */
+    public static class StoredBlob {
+        private final String hash;
+        private final long size;
+
+        public StoredBlob(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Streams a new blob into a temporary file. {@link #commit()} moves it into the
+     * store under its hash, {@link #abort()} throws it away.
+     */
+    public class BlobWriter extends FilterOutputStream {
+        private final Path temporaryFile;
+        private final MessageDigest digest;
+        private long size;
+        private boolean finished;
+
+        private BlobWriter(Path temporaryFile) throws IOException {
+            super(null);
+            this.temporaryFile = temporaryFile;
+            this.digest = newDigest();
+
+            OutputStream file = new BufferedOutputStream(
+                    Channels.newOutputStream(FileChannel.open(temporaryFile, StandardOpenOption.WRITE)), BUFFER_SIZE);
+            out = new DigestOutputStream(compress ? new GZIPOutputStream(file, BUFFER_SIZE) : file, digest);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            size += len;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public StoredBlob commit() throws IOException {
+            close();
+            finished = true;
+
+            String hash = toHex(digest.digest());
+            Path target = pathOf(hash);
+            if (compress) {
+                target = target.resolveSibling(target.getFileName() + COMPRESSED_SUFFIX);
+            }
+
+            if (exists(hash)) {
+                Files.deleteIfExists(temporaryFile);
+            } else {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temporaryFile, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored concurrently by another writer
+                    Files.deleteIfExists(temporaryFile);
+                }
+            }
+            return new StoredBlob(hash, size);
+        }
+
+        /**
+         * Discards the blob unless it has been committed. Safe to call more than once.
+         */
+        public void abort() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            try {
+                close();
+            } catch (IOException ignored) {
+            }
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,367 @@
+package com.vaadin;
+
+import com.vaadin.ui.UI;
+import org.vaadin.bugrap.domain.BugrapRepository;
+import org.vaadin.bugrap.domain.entities.Comment;
+import org.vaadin.bugrap.domain.entities.Report;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Application scoped backend access point.
+ * <p>
+ * One instance is started by {@link MyUI.MyUIServlet} and shared by every UI of the
+ * servlet. It owns the single {@link BugrapRepository} and a bounded pool of JDBC
+ * connections to the same database.
+ * <p>
+ * Reports and comments are saved through the backend, which keeps the caches and the
+ * search index derived from them up to date and tells the other UIs about the change.
+ */
+public class Backend {
+
+    public static final String DB_PATH_PROPERTY = "bugrap.db.path";
+    public static final String POOL_SIZE_PROPERTY = "bugrap.db.poolSize";
+    public static final String CACHED_TABLES_PROPERTY = "bugrap.db.cachedTables";
+    public static final String CACHE_SIZE_PROPERTY = "bugrap.db.cacheSizeKb";
+    public static final String ATTACHMENTS_PATH_PROPERTY = "bugrap.attachments.path";
+    public static final String ATTACHMENTS_COMPRESS_PROPERTY = "bugrap.attachments.compress";
+
+    static final String DEFAULT_DB_PATH = "/var/tmp/bugrap";
+    static final int DEFAULT_POOL_SIZE = 16;
+    static final int DEFAULT_CACHE_SIZE_KB = 64 * 1024;
+    private static final long BORROW_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_SEARCH_RESULTS = 1_000;
+    private static final int MAX_CACHED_SEARCHES = 256;
+    private static final int MAX_CACHED_ATTACHMENTS = 1_024;
+    private static final int MAX_IDS_PER_QUERY = 1_000;
+
+    private final String dbPath;
+    private final BugrapRepository repository;
+    private final ConnectionPool connectionPool;
+    private final ReportQueries reportQueries;
+    private final CommentQueries commentQueries;
+    private final AttachmentStore attachmentStore;
+    private final ReportStatisticsCache statisticsCache;
+    private final ReportQueryCache queryCache;
+    private final ReferenceDataCache referenceData = new ReferenceDataCache(this);
+    private final ReportSearchIndex searchIndex = new ReportSearchIndex();
+    private final LruCache<ReportFilter, List<Long>> searchResults = new LruCache<>(MAX_CACHED_SEARCHES);
+    /**
+     * The attachment of a comment is set once, right after the comment is saved
+     */
+    private final LruCache<Long, AttachmentRow> attachments = new LruCache<>(MAX_CACHED_ATTACHMENTS);
+    private final EntityCache entityCache;
+    private final ReportChangeBus changeBus = new ReportChangeBus(
+            Long.getLong(ReportChangeBus.WINDOW_PROPERTY, ReportChangeBus.DEFAULT_WINDOW_MILLIS));
+
+    /**
+     * The repository creates its EntityManagers internally, so the number of calls
+     * running against it at the same time is bounded here instead.
+     */
+    private final Semaphore repositoryPermits;
+    private final QueryExecutor queryExecutor;
+    private final Metrics metrics = new Metrics(Long.getLong(Metrics.SLOW_CALL_PROPERTY, Metrics.DEFAULT_SLOW_CALL_MILLIS));
+
+    public Backend(String dbPath, int poolSize) {
+        this.dbPath = dbPath;
+        this.repository = new BugrapRepository(dbPath);
+        this.connectionPool = new ConnectionPool("jdbc:hsqldb:file:" + dbPath, poolSize, BORROW_TIMEOUT_MILLIS);
+        this.repositoryPermits = new Semaphore(poolSize, true);
+        this.queryExecutor = new QueryExecutor(poolSize);
+        this.reportQueries = new ReportQueries(connectionPool);
+        this.commentQueries = new CommentQueries(connectionPool);
+        this.attachmentStore = new AttachmentStore(
+                Paths.get(System.getProperty(ATTACHMENTS_PATH_PROPERTY, dbPath + "/attachments")),
+                Boolean.getBoolean(ATTACHMENTS_COMPRESS_PROPERTY));
+        this.statisticsCache = new ReportStatisticsCache(reportQueries);
+        this.queryCache = new ReportQueryCache(reportQueries);
+        this.entityCache = new EntityCache(repository);
+
+        metrics.addCache("reportStatistics", statisticsCache.getCache());
+        metrics.addCache("reportQueries", queryCache.getCache());
+        metrics.addCache("searchResults", searchResults);
+        metrics.addCache("attachments", attachments);
+        metrics.addCache("referenceData", referenceData.getCache());
+    }
+
+    public static Backend fromSystemProperties() {
+        return new Backend(System.getProperty(DB_PATH_PROPERTY, DEFAULT_DB_PATH),
+                Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+    }
+
+    /**
+     * Seeds and migrates the database and builds the search index. Called once when
+     * the application is deployed.
+     */
+    public void start() {
+        withRepository(repo -> {
+            repo.populateWithTestData();
+            return null;
+        });
+        SchemaMigrations.migrate(connectionPool,
+                Boolean.parseBoolean(System.getProperty(CACHED_TABLES_PROPERTY, "true")),
+                Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE_KB));
+        if (commentQueries.moveLegacyAttachments(attachmentStore) > 0) {
+            entityCache.evictAll(Comment.class);
+        }
+        rebuildSearchIndex();
+        referenceData.invalidateAll();
+        metrics.publish();
+    }
+
+    public void rebuildSearchIndex() {
+        searchIndex.clear();
+        reportQueries.scanReportTexts(searchIndex::addReport);
+        reportQueries.scanCommentTexts(searchIndex::addComment);
+        searchResults.invalidateAll();
+    }
+
+    public void stop() {
+        metrics.unpublish();
+        changeBus.shutdown();
+        queryExecutor.shutdown();
+        connectionPool.close();
+    }
+
+    public String getDbPath() {
+        return dbPath;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public ReportQueries getReportQueries() {
+        return reportQueries;
+    }
+
+    public CommentQueries getCommentQueries() {
+        return commentQueries;
+    }
+
+    public AttachmentStore getAttachmentStore() {
+        return attachmentStore;
+    }
+
+    public ReportStatisticsCache getStatisticsCache() {
+        return statisticsCache;
+    }
+
+    public ReportQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    public ReferenceDataCache getReferenceData() {
+        return referenceData;
+    }
+
+    public ReportSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public QueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public ReportChangeBus getChangeBus() {
+        return changeBus;
+    }
+
+    /**
+     * Returns the ids of one page of reports matching the filter. Searches are ordered
+     * by relevance unless sorted otherwise.
+     */
+    public List<Long> findReportIds(ReportFilter filter, ReportSort sort, int offset, int limit) {
+        if (!filter.hasSearchText()) {
+            return queryCache.findReportIds(filter, sort, offset, limit);
+        }
+
+        List<Long> matches = searchMatches(filter);
+        if (!sort.isById()) {
+            matches = reportQueries.sortReportIds(matches, sort);
+        }
+        int from = Math.min(offset, matches.size());
+        return matches.subList(from, Math.min(from + limit, matches.size()));
+    }
+
+    public int countReports(ReportFilter filter) {
+        if (!filter.hasSearchText()) {
+            return queryCache.countReports(filter);
+        }
+        return searchMatches(filter).size();
+    }
+
+    /**
+     * Ranks the reports matching the search text among the reports matching the rest of
+     * the filter, so the {@value #MAX_SEARCH_RESULTS} results are the best ones of the
+     * selected project and not of all projects.
+     */
+    private List<Long> searchMatches(ReportFilter filter) {
+        return searchResults.get(filter, key -> {
+            List<Long> filtered = queryCache.findAllReportIds(key);
+            if (filtered == null) {
+                filtered = reportQueries.findReportIds(key, ReportSort.BY_ID, 0, Integer.MAX_VALUE);
+            }
+            Set<Long> accepted = new HashSet<>(filtered);
+
+            return Collections.unmodifiableList(
+                    searchIndex.search(key.getSearchText(), accepted::contains, MAX_SEARCH_RESULTS));
+        });
+    }
+
+    /**
+     * Writes the fields changed by the edit to the reports, keeping concurrent changes
+     * of other users, see {@link ReportQueries#update}.
+     *
+     * @param reports the reports with the values the edit started from
+     */
+    public ReportEditResult updateReports(Collection<Report> reports, ReportEdit edit, BatchProgressListener progress) {
+        if (reports.isEmpty() || edit.isEmpty()) {
+            return new ReportEditResult(Collections.emptyList(), Collections.emptySet());
+        }
+
+        ReportEditResult result = reportQueries.update(reports, edit, progress);
+        List<Long> updatedIds = result.getUpdatedIds();
+
+        entityCache.evict(Report.class, updatedIds);
+        for (ReportState state : result.getUpdated()) {
+            ReportState after = edit.applyTo(state);
+            statisticsCache.reportSaved(state, after);
+            queryCache.reportSaved(state, after);
+        }
+        searchResults.invalidateAll();
+
+        if (!updatedIds.isEmpty()) {
+            changeBus.publish(ReportChanges.ofReports(updatedIds), UI.getCurrent());
+        }
+        return result;
+    }
+
+    /**
+     * Updates everything derived from the persisted reports after the
+     * {@link ReportImporter} committed rows it inserted directly.
+     *
+     * @param comments the texts of the imported comments by report id
+     */
+    public void rowsImported(List<ReportRow> reports, Map<Long, List<String>> comments, boolean referenceDataChanged) {
+        if (referenceDataChanged) {
+            referenceData.invalidateAll();
+        }
+
+        for (ReportRow report : reports) {
+            ReportState state = new ReportState(report.getId(), report.getProjectId(), report.getVersionId(),
+                    report.getStatus(), report.getAssignedId());
+            statisticsCache.reportSaved(null, state);
+            queryCache.reportSaved(null, state);
+            searchIndex.addReport(report.getId(), report.getSummary(), report.getDescription());
+        }
+        comments.forEach((reportId, texts) -> texts.forEach(text -> searchIndex.addComment(reportId, text)));
+        searchResults.invalidateAll();
+
+        changeBus.publish(new ReportChanges(reports.stream().map(ReportRow::getId).collect(Collectors.toList()),
+                comments.keySet()), UI.getCurrent());
+    }
+
+    public Map<Long, Integer> getCommentCounts(Collection<Long> reportIds) {
+        return reportQueries.findCommentCounts(reportIds);
+    }
+
+    /**
+     * @return the attachment of the comment, or {@code null} if it has none
+     */
+    public AttachmentRow findAttachment(long commentId) {
+        return attachments.get(commentId, commentQueries::findAttachment);
+    }
+
+    /**
+     * Saves a new comment, counts it on its report and indexes its text.
+     *
+     * @param attachment the stored attachment of the comment, or {@code null}
+     */
+    public Comment saveComment(Comment comment, AttachmentStore.StoredBlob attachment) {
+        Comment saved = withRepository(repo -> repo.save(comment));
+
+        if (attachment != null) {
+            commentQueries.setAttachment(saved.getId(), attachment);
+        }
+
+        if (saved.getReport() != null) {
+            reportQueries.updateCommentCount(saved.getReport().getId());
+            searchIndex.addComment(saved.getReport().getId(), saved.getComment());
+            searchResults.invalidateAll();
+            changeBus.publish(ReportChanges.ofComment(saved.getReport().getId()), UI.getCurrent());
+        }
+        return saved;
+    }
+
+    /**
+     * Loads the reports with one query per {@value #MAX_IDS_PER_QUERY} ids, in the order
+     * of the ids. Reports deleted since their ids were read are left out.
+     */
+    public List<Report> findReportsById(List<Long> reportIds) {
+        if (reportIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Report> loaded = withEntityManager(entityManager -> {
+            Map<Long, Report> reports = new HashMap<>();
+            for (int from = 0; from < reportIds.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> batch = reportIds.subList(from, Math.min(from + MAX_IDS_PER_QUERY, reportIds.size()));
+                for (Report report : entityManager.createQuery("SELECT r FROM Report r WHERE r.id IN :ids", Report.class)
+                        .setParameter("ids", batch)
+                        .getResultList()) {
+                    reports.put(report.getId(), report);
+                }
+            }
+            return reports;
+        });
+
+        return reportIds.stream()
+                .map(loaded::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private <T> T withEntityManager(Function<EntityManager, T> call) {
+        return withRepository(repo -> {
+            EntityManager entityManager = entityCache.createEntityManager();
+            try {
+                return call.apply(entityManager);
+            } finally {
+                entityManager.close();
+            }
+        });
+    }
+
+    public <T> T withRepository(Function<BugrapRepository, T> call) {
+        try {
+            repositoryPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackendException("Interrupted while waiting for the repository", e);
+        }
+
+        try {
+            return call.apply(repository);
+        } finally {
+            repositoryPermits.release();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.vaadin;
+
+/**
+ * Thrown when the backend fails to talk to the bugrap database.
+ */
+public class BackendException extends RuntimeException {
+
+    public BackendException(String message) {
+        super(message);
+    }
+
+    public BackendException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.vaadin;
+
+/**
+ * Gets notified as a long running batch operation makes progress.
+ */
+@FunctionalInterface
+public interface BatchProgressListener {
+
+    BatchProgressListener NONE = (done, total) -> { };
+
+    /**
+     * @param done  the number of rows processed so far
+     * @param total the number of rows to process, or -1 if unknown
+     */
+    void onProgress(long done, long total);
+}
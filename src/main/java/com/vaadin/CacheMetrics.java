@@ -0,0 +1,44 @@
+package com.vaadin;
+
+/**
+ * Publishes the counters of an {@link LruCache}.
+ */
+public class CacheMetrics implements CacheMetricsMBean {
+
+    private final String name;
+    private final LruCache<?, ?> cache;
+
+    CacheMetrics(String name, LruCache<?, ?> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+}
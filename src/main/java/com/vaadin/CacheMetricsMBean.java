@@ -0,0 +1,17 @@
+package com.vaadin;
+
+/**
+ * JMX view of the effectiveness of one backend cache.
+ */
+public interface CacheMetricsMBean {
+
+    int getSize();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    double getHitRatio();
+}
@@ -0,0 +1,127 @@
+package com.vaadin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, latency histogram and returned rows of one backend call.
+ * <p>
+ * Latencies go into fixed buckets, so recording never allocates and percentiles are
+ * the upper bound of the bucket they fall into.
+ */
+public class CallMetrics implements CallMetricsMBean {
+
+    /**
+     * Upper bounds of the latency buckets in milliseconds. The last bucket takes
+     * everything slower.
+     */
+    static final long[] BUCKET_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000};
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    CallMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void record(long nanos, long rowCount, boolean failed) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        rows.add(rowCount);
+        if (failed) {
+            errors.increment();
+        }
+
+        long millis = nanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < BUCKET_MILLIS.length && millis >= BUCKET_MILLIS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long calls = count.sum();
+        return calls == 0 ? 0 : totalNanos.sum() / 1e6 / calls;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(99);
+    }
+
+    /**
+     * @return the number of calls in each bucket of {@link #BUCKET_MILLIS}, plus the
+     * calls slower than the last one
+     */
+    long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    private double percentileMillis(int percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BUCKET_MILLIS[i];
+            }
+        }
+        return getMaxMillis();
+    }
+}
@@ -0,0 +1,23 @@
+package com.vaadin;
+
+/**
+ * JMX view of the timings of one backend call.
+ */
+public interface CallMetricsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    long getRowCount();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+}
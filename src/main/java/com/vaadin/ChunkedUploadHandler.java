@@ -0,0 +1,324 @@
+package com.vaadin;
+
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Receives attachments in chunks, so a large upload that is interrupted can continue
+ * where it stopped instead of starting over.
+ * <p>
+ * One handler is registered per session and only knows the uploads started in that
+ * session. Requests are handled without holding the session lock.
+ * <ul>
+ * <li>{@code POST chunked-upload?name=<file>} starts an upload and answers its token</li>
+ * <li>{@code PUT chunked-upload/<token>} with {@code Content-Range: bytes <first>-<last>/<total>}
+ * appends a chunk. The first byte has to be the next one expected. An empty file is
+ * sent as one empty request with {@code Content-Range: bytes *}{@code /0}.</li>
+ * <li>{@code HEAD chunked-upload/<token>} tells how much has been received, in a
+ * {@code Range} header, for resuming</li>
+ * <li>{@code DELETE chunked-upload/<token>} throws the upload away</li>
+ * </ul>
+ * Unfinished chunks are answered with {@value #RESUME_INCOMPLETE} and the received
+ * range, the last chunk with 201 and the size of the file.
+ * <p>
+ * A session may have {@value #MAX_OPEN_UPLOADS} uploads open at once, of at most
+ * {@value #MAX_UPLOAD_SIZE} bytes each. A finished upload stays in a temporary file
+ * until it is taken with {@link #takeCompleted}, which moves it into the store. Uploads
+ * idle for longer than an hour, finished or not, are thrown away.
+ */
+public class ChunkedUploadHandler implements RequestHandler {
+
+    static final String PATH = "chunked-upload";
+
+    private static final int RESUME_INCOMPLETE = 308;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_TIMEOUT_MILLIS = 60 * 60 * 1000;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+
+    static final int MAX_OPEN_UPLOADS = 4;
+    static final long MAX_UPLOAD_SIZE = 100L * 1024 * 1024;
+
+    private final AttachmentStore store;
+    private final Map<String, ChunkedUpload> uploads = new ConcurrentHashMap<>();
+
+    public ChunkedUploadHandler(AttachmentStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request, VaadinResponse response) throws IOException {
+        String path = request.getPathInfo();
+        if (path == null || !path.startsWith("/" + PATH)) {
+            return false;
+        }
+
+        String token = path.length() > PATH.length() + 2 ? path.substring(PATH.length() + 2) : null;
+        String method = request.getMethod();
+
+        if (token == null) {
+            if (!"POST".equals(method)) {
+                response.sendError(405, "Start an upload with POST");
+                return true;
+            }
+            start(request, response);
+            return true;
+        }
+
+        ChunkedUpload upload = uploads.get(token);
+        if (upload == null) {
+            response.sendError(404, "No such upload");
+            return true;
+        }
+
+        switch (method) {
+            case "PUT":
+                receiveChunk(upload, request, response);
+                break;
+            case "HEAD":
+            case "GET":
+                synchronized (upload) {
+                    answerReceived(upload, response);
+                }
+                break;
+            case "DELETE":
+                uploads.remove(token);
+                upload.abort();
+                response.setStatus(204);
+                break;
+            default:
+                response.sendError(405, "Unsupported method " + method);
+        }
+        return true;
+    }
+
+    /**
+     * Moves a finished upload into the store and forgets it, or returns {@code null}
+     * when the upload is unknown or not finished yet.
+     */
+    public ChunkedUpload takeCompleted(String token) {
+        ChunkedUpload upload = uploads.get(token);
+        if (upload == null) {
+            return null;
+        }
+
+        synchronized (upload) {
+            if (!upload.isFinished() || !uploads.remove(token, upload)) {
+                return null;
+            }
+            try {
+                upload.complete();
+            } catch (IOException e) {
+                upload.abort();
+                throw new BackendException("Could not store the upload of " + upload.getFileName(), e);
+            }
+        }
+        return upload;
+    }
+
+    /**
+     * Throws away every upload that was not taken. Called when the session is destroyed.
+     */
+    public void abortAll() {
+        uploads.values().forEach(ChunkedUpload::abort);
+        uploads.clear();
+    }
+
+    private void start(VaadinRequest request, VaadinResponse response) throws IOException {
+        String fileName = request.getParameter("name");
+        if (fileName == null || fileName.trim().isEmpty()) {
+            response.sendError(400, "Missing file name");
+            return;
+        }
+
+        ChunkedUpload upload;
+        synchronized (uploads) {
+            expireIdleUploads();
+            if (uploads.size() >= MAX_OPEN_UPLOADS) {
+                response.sendError(429, "Too many uploads in progress");
+                return;
+            }
+
+            upload = new ChunkedUpload(UUID.randomUUID().toString(), fileName, store.newWriter());
+            uploads.put(upload.getToken(), upload);
+        }
+
+        response.setStatus(201);
+        response.setHeader("Location", PATH + "/" + upload.getToken());
+        response.setContentType("text/plain");
+        try (PrintWriter writer = response.getWriter()) {
+            writer.print(upload.getToken());
+        }
+    }
+
+    private void receiveChunk(ChunkedUpload upload, VaadinRequest request, VaadinResponse response) throws IOException {
+        String contentRange = request.getHeader("Content-Range");
+        Matcher range = contentRange != null ? CONTENT_RANGE.matcher(contentRange) : null;
+        if (range == null || !range.matches()) {
+            response.sendError(400, "Expected Content-Range: bytes <first>-<last>/<total>");
+            return;
+        }
+
+        // "bytes */0" is the only range an empty file can have
+        boolean empty = range.group(1) == null;
+        long first = empty ? 0 : Long.parseLong(range.group(1));
+        long last = empty ? -1 : Long.parseLong(range.group(2));
+        long total = Long.parseLong(range.group(3));
+        if (empty ? total != 0 : last < first || last >= total) {
+            response.sendError(400, "Invalid Content-Range " + contentRange);
+            return;
+        }
+        if (total > MAX_UPLOAD_SIZE) {
+            uploads.remove(upload.getToken());
+            upload.abort();
+            response.sendError(413, "Attachments may have at most " + MAX_UPLOAD_SIZE + " bytes");
+            return;
+        }
+
+        synchronized (upload) {
+            if (upload.isFinished() || first != upload.getReceived()
+                    || (upload.getTotal() >= 0 && upload.getTotal() != total)) {
+                // Tell the client where to continue from
+                response.setStatus(409);
+                setReceivedRange(upload, response);
+                return;
+            }
+
+            upload.setTotal(total);
+            try {
+                copy(request.getInputStream(), upload.getWriter(), last - first + 1);
+            } finally {
+                // A chunk cut short still counts up to its last received byte
+                upload.touch();
+            }
+
+            if (upload.isFinished()) {
+                response.setStatus(201);
+                response.setContentType("application/json");
+                try (PrintWriter writer = response.getWriter()) {
+                    writer.printf("{\"token\":\"%s\",\"size\":%d}", upload.getToken(), total);
+                }
+            } else {
+                answerReceived(upload, response);
+            }
+        }
+    }
+
+    private static void answerReceived(ChunkedUpload upload, VaadinResponse response) {
+        response.setStatus(upload.isFinished() ? 200 : RESUME_INCOMPLETE);
+        setReceivedRange(upload, response);
+    }
+
+    private static void setReceivedRange(ChunkedUpload upload, VaadinResponse response) {
+        if (upload.getReceived() > 0) {
+            response.setHeader("Range", "bytes=0-" + (upload.getReceived() - 1));
+        }
+    }
+
+    private static void copy(InputStream in, AttachmentStore.BlobWriter out, long count) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = count;
+        int read;
+        while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private void expireIdleUploads() {
+        long now = System.currentTimeMillis();
+        Iterator<ChunkedUpload> iterator = uploads.values().iterator();
+        while (iterator.hasNext()) {
+            ChunkedUpload upload = iterator.next();
+            if (now - upload.getLastActivity() > IDLE_TIMEOUT_MILLIS) {
+                iterator.remove();
+                upload.abort();
+            }
+        }
+    }
+
+    /**
+     * An upload in progress. The received bytes go straight into the writer's
+     * temporary file, and the content hash is computed as they arrive. The file is
+     * committed to the store when the upload is taken.
+     */
+    public static class ChunkedUpload {
+        private final String token;
+        private final String fileName;
+        private final AttachmentStore.BlobWriter writer;
+        private long total = -1;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private AttachmentStore.StoredBlob blob;
+
+        ChunkedUpload(String token, String fileName, AttachmentStore.BlobWriter writer) {
+            this.token = token;
+            this.fileName = fileName;
+            this.writer = writer;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return the stored attachment, or {@code null} until the upload is taken
+         */
+        public AttachmentStore.StoredBlob getBlob() {
+            return blob;
+        }
+
+        AttachmentStore.BlobWriter getWriter() {
+            return writer;
+        }
+
+        long getReceived() {
+            return writer.getSize();
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        /**
+         * Whether all bytes have arrived.
+         */
+        boolean isFinished() {
+            return total >= 0 && getReceived() == total;
+        }
+
+        void setTotal(long total) {
+            this.total = total;
+        }
+
+        long getLastActivity() {
+            return lastActivity;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        void complete() throws IOException {
+            blob = writer.commit();
+        }
+
+        synchronized void abort() {
+            writer.abort();
+        }
+    }
+}
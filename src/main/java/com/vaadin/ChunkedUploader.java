@@ -0,0 +1,77 @@
+package com.vaadin;
+
+import com.vaadin.annotations.JavaScript;
+import com.vaadin.server.AbstractJavaScriptExtension;
+import com.vaadin.shared.JavaScriptExtensionState;
+import com.vaadin.ui.Button;
+
+import java.io.Serializable;
+
+/**
+ * Lets a button pick a file and send it to the {@link ChunkedUploadHandler} of the
+ * session in chunks. When a chunk fails, the browser asks the handler how much arrived
+ * and continues from there, so an interrupted upload does not start over.
+ * <p>
+ * The listener is told about the upload through the regular client to server calls,
+ * so it runs with the session locked and may update components directly.
+ */
+@JavaScript("chunked-uploader.js")
+public class ChunkedUploader extends AbstractJavaScriptExtension {
+
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    public interface Listener extends Serializable {
+
+        void uploadStarted(String fileName);
+
+        void uploadProgress(long received, long total);
+
+        /**
+         * @param token the token to take the finished upload with from the
+         *              {@link ChunkedUploadHandler}
+         */
+        void uploadFinished(String token);
+
+        void uploadFailed(String message);
+    }
+
+    public static class State extends JavaScriptExtensionState {
+        public String url;
+        public int chunkSize;
+        public long maxFileSize;
+        public int progressIntervalMillis;
+    }
+
+    /**
+     * @param url the URL of the {@link ChunkedUploadHandler}
+     * @param progressIntervalMillis the minimum time between two progress updates
+     */
+    public ChunkedUploader(String url, int progressIntervalMillis, Listener listener) {
+        getState().url = url;
+        getState().chunkSize = DEFAULT_CHUNK_SIZE;
+        getState().maxFileSize = ChunkedUploadHandler.MAX_UPLOAD_SIZE;
+        getState().progressIntervalMillis = progressIntervalMillis;
+
+        addFunction("onStarted", arguments -> listener.uploadStarted(arguments.getString(0)));
+        addFunction("onProgress", arguments -> listener.uploadProgress(
+                (long) arguments.getNumber(0), (long) arguments.getNumber(1)));
+        addFunction("onFinished", arguments -> listener.uploadFinished(arguments.getString(0)));
+        addFunction("onFailed", arguments -> listener.uploadFailed(arguments.getString(0)));
+    }
+
+    public void extend(Button button) {
+        super.extend(button);
+    }
+
+    /**
+     * Stops the upload in progress and throws away what was received.
+     */
+    public void cancel() {
+        callFunction("cancel");
+    }
+
+    @Override
+    protected State getState() {
+        return (State) super.getState();
+    }
+}
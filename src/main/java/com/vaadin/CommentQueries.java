@@ -0,0 +1,150 @@
+package com.vaadin;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comment queries the repository does not offer, run directly against the COMMENT table.
+ */
+public class CommentQueries {
+
+    private final ConnectionPool connectionPool;
+
+    public CommentQueries(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Returns a page of the comments of a report, newest first.
+     *
+     * @param olderThan the last comment of the previous page, or {@code null} for the
+     *                  newest comments
+     */
+    public List<CommentRow> findComments(long reportId, CommentRow olderThan, int limit) {
+        String sql = "SELECT C.ID, R.NAME, C.TIMESTAMP, C.COMMENT, C.ATTACHMENTNAME FROM COMMENT C"
+                + " LEFT JOIN REPORTER R ON R.ID = C.AUTHOR_ID WHERE C.REPORT_ID = ?"
+                + (olderThan != null ? " AND (C.TIMESTAMP < ? OR (C.TIMESTAMP = ? AND C.ID < ?))" : "")
+                + " ORDER BY C.TIMESTAMP DESC, C.ID DESC LIMIT ?";
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int param = 1;
+                statement.setLong(param++, reportId);
+                if (olderThan != null) {
+                    Timestamp timestamp = new Timestamp(olderThan.getTimestamp().getTime());
+                    statement.setTimestamp(param++, timestamp);
+                    statement.setTimestamp(param++, timestamp);
+                    statement.setLong(param++, olderThan.getId());
+                }
+                statement.setInt(param, limit);
+
+                List<CommentRow> comments = new ArrayList<>(limit);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        comments.add(new CommentRow(resultSet.getLong(1),
+                                resultSet.getString(2),
+                                resultSet.getTimestamp(3),
+                                resultSet.getString(4),
+                                resultSet.getString(5)));
+                    }
+                }
+                return comments;
+            }
+        });
+    }
+
+    /**
+     * Points the comment at a blob in the {@link AttachmentStore}.
+     */
+    public void setAttachment(long commentId, AttachmentStore.StoredBlob blob) {
+        connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE COMMENT SET ATTACHMENTHASH = ?, ATTACHMENTSIZE = ? WHERE ID = ?")) {
+                statement.setString(1, blob.getHash());
+                statement.setLong(2, blob.getSize());
+                statement.setLong(3, commentId);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Returns the attachment name and blob of a comment, or {@code null} if it has none.
+     */
+    public AttachmentRow findAttachment(long commentId) {
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT ATTACHMENTNAME, ATTACHMENTHASH, ATTACHMENTSIZE FROM COMMENT WHERE ID = ? AND ATTACHMENTHASH IS NOT NULL")) {
+                statement.setLong(1, commentId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next()
+                            ? new AttachmentRow(resultSet.getString(1),
+                                    new AttachmentStore.StoredBlob(resultSet.getString(2), resultSet.getLong(3)))
+                            : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves attachments still stored in the ATTACHMENT column into the store, one
+     * comment at a time so that only one attachment is in memory at once.
+     *
+     * @return the number of attachments moved
+     */
+    public int moveLegacyAttachments(AttachmentStore store) {
+        int moved = 0;
+        Long commentId;
+        while ((commentId = nextLegacyAttachment()) != null) {
+            moveLegacyAttachment(commentId, store);
+            moved++;
+        }
+        return moved;
+    }
+
+    private Long nextLegacyAttachment() {
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT ID FROM COMMENT WHERE ATTACHMENT IS NOT NULL LIMIT 1")) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : null;
+                }
+            }
+        });
+    }
+
+    private void moveLegacyAttachment(long commentId, AttachmentStore store) {
+        connectionPool.executeInTransaction(connection -> {
+            byte[] content;
+            try (PreparedStatement select = connection.prepareStatement("SELECT ATTACHMENT FROM COMMENT WHERE ID = ?")) {
+                select.setLong(1, commentId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    resultSet.next();
+                    content = resultSet.getBytes(1);
+                }
+            }
+
+            AttachmentStore.StoredBlob blob;
+            try {
+                blob = store.store(new ByteArrayInputStream(content));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE COMMENT SET ATTACHMENT = NULL, ATTACHMENTHASH = ?, ATTACHMENTSIZE = ? WHERE ID = ?")) {
+                update.setString(1, blob.getHash());
+                update.setLong(2, blob.getSize());
+                update.setLong(3, commentId);
+                return update.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.vaadin;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * What the comment thread shows of a comment, read without loading the comment entity
+ * or its attachment.
+ */
+public class CommentRow implements Serializable {
+
+    private final long id;
+    private final String author;
+    private final Date timestamp;
+    private final String comment;
+    private final String attachmentName;
+
+    public CommentRow(long id, String author, Date timestamp, String comment, String attachmentName) {
+        this.id = id;
+        this.author = author;
+        this.timestamp = timestamp;
+        this.comment = comment;
+        this.attachmentName = attachmentName;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public String getAttachmentName() {
+        return attachmentName;
+    }
+}
@@ -0,0 +1,152 @@
+package com.vaadin;
+
+import com.vaadin.icons.VaadinIcons;
+import com.vaadin.server.ExternalResource;
+import com.vaadin.shared.ui.ContentMode;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Link;
+import com.vaadin.ui.themes.ValoTheme;
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.text.DateFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Comments of one report, newest first, loaded a page at a time.
+ * <p>
+ * Only the loaded pages exist on the server, and each comment is a single HTML label
+ * (plus a link when it has an attachment) instead of a tree of layouts.
+ */
+public class CommentThread extends CssLayout {
+
+    static final int PAGE_SIZE = 20;
+
+    private final DateFormat dateTimeFormatter = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, Locale.ENGLISH);
+
+    private final MyUI myUI;
+    private final CssLayout comments = new CssLayout();
+    private final Button loadOlderBtn = new Button("Show older comments");
+
+    private Report report;
+    private int commentCount;
+    private int loadedCount;
+    private CommentRow oldestLoaded;
+
+    public CommentThread(MyUI myUI) {
+        this.myUI = myUI;
+
+        setWidth("100%");
+        comments.setWidth("100%");
+
+        loadOlderBtn.addStyleName(ValoTheme.BUTTON_BORDERLESS);
+        loadOlderBtn.addStyleName(ValoTheme.BUTTON_SMALL);
+        loadOlderBtn.addClickListener(e -> loadOlder());
+
+        addComponents(comments, loadOlderBtn);
+    }
+
+    /**
+     * Shows the newest comments of the report. Showing the same report again with
+     * an unchanged comment count keeps the pages that are already loaded.
+     */
+    public void showReport(Report report, int commentCount) {
+        if (this.report != null && this.report.getId() == report.getId() && this.commentCount == commentCount) {
+            return;
+        }
+
+        this.report = report;
+        this.commentCount = commentCount;
+        loadedCount = 0;
+        oldestLoaded = null;
+        comments.removeAllComponents();
+
+        loadOlder();
+    }
+
+    public void clear() {
+        report = null;
+        commentCount = 0;
+        loadedCount = 0;
+        oldestLoaded = null;
+        comments.removeAllComponents();
+        loadOlderBtn.setVisible(false);
+    }
+
+    private void loadOlder() {
+        // One extra row tells whether there is yet another page
+        List<CommentRow> page = myUI.fetchComments(report, oldestLoaded, PAGE_SIZE + 1);
+        boolean hasMore = page.size() > PAGE_SIZE;
+        if (hasMore) {
+            page = page.subList(0, PAGE_SIZE);
+        }
+
+        page.forEach(comment -> comments.addComponent(buildCommentComponent(comment)));
+        loadedCount += page.size();
+        if (!page.isEmpty()) {
+            oldestLoaded = page.get(page.size() - 1);
+        }
+
+        loadOlderBtn.setVisible(hasMore);
+        if (hasMore) {
+            loadOlderBtn.setCaption(String.format("Show older comments (%d more)", Math.max(commentCount - loadedCount, 1)));
+        }
+    }
+
+    private Component buildCommentComponent(CommentRow comment) {
+        Label content = new Label(String.format(
+                "<span class=\"report-comments-icon\">%s</span>"
+                        + "<div class=\"report-comments-title\">%s (%s)</div>"
+                        + "<div class=\"report-comments-text\">%s</div>",
+                VaadinIcons.USER.getHtml(),
+                escapeHtml(comment.getAuthor()),
+                dateTimeFormatter.format(comment.getTimestamp()),
+                escapeHtml(comment.getComment())), ContentMode.HTML);
+        content.setWidth("100%");
+
+        if (comment.getAttachmentName() == null) {
+            content.addStyleName("comment-thread__comment");
+            return content;
+        }
+
+        CssLayout root = new CssLayout(content, createAttachmentLink(comment));
+        root.setWidth("100%");
+        root.addStyleName("comment-thread__comment");
+        return root;
+    }
+
+    /**
+     * Plain link to the attachment download, so no resource is kept in the session for
+     * attachments nobody downloads.
+     */
+    private Link createAttachmentLink(CommentRow comment) {
+        Link attachmentLink = new Link(comment.getAttachmentName(),
+                new ExternalResource(myUI.getAttachmentUrl(comment.getId(), comment.getAttachmentName())));
+        attachmentLink.setIcon(VaadinIcons.PAPERCLIP);
+
+        return attachmentLink;
+    }
+
+    private static String escapeHtml(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
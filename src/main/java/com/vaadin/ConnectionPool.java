@@ -0,0 +1,131 @@
+package com.vaadin;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, thread-safe pool of JDBC connections to the bugrap database.
+ * <p>
+ * Connections are opened lazily up to {@code maxSize} and handed back to the pool
+ * once the work given to {@link #execute(SqlWork)} has finished.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<Connection> idle;
+
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, int maxSize, long borrowTimeoutMillis) {
+        this.url = url;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    public <T> T execute(SqlWork<T> work) {
+        Connection connection = borrow();
+        boolean broken = false;
+        try {
+            return work.execute(connection);
+        } catch (SQLException e) {
+            broken = isBroken(connection);
+            throw new BackendException("Database call failed", e);
+        } finally {
+            release(connection, broken);
+        }
+    }
+
+    /**
+     * Runs the work with auto-commit disabled, committing when it returns and rolling
+     * back when it throws.
+     */
+    public <T> T executeInTransaction(SqlWork<T> work) {
+        return execute(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.execute(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private Connection borrow() {
+        if (closed) {
+            throw new BackendException("Connection pool is closed");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new BackendException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackendException("Interrupted while waiting for a database connection", e);
+        }
+
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+
+        try {
+            return DriverManager.getConnection(url, "SA", "");
+        } catch (SQLException e) {
+            permits.release();
+            throw new BackendException("Could not open a database connection", e);
+        }
+    }
+
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (broken || closed || !idle.offer(connection)) {
+                closeQuietly(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static boolean isBroken(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.vaadin;
+
+import com.vaadin.icons.VaadinIcons;
+
+/**
+ * Looks up the icons the designs refer to as {@code fonticon://Vaadin-Icons/<codepoint>}.
+ */
+final class DesignIcons {
+
+    private DesignIcons() {
+    }
+
+    static VaadinIcons vaadinIcon(int codepoint) {
+        for (VaadinIcons icon : VaadinIcons.values()) {
+            if (icon.getCodepoint() == codepoint) {
+                return icon;
+            }
+        }
+        throw new IllegalArgumentException("No Vaadin icon with codepoint " + Integer.toHexString(codepoint));
+    }
+}
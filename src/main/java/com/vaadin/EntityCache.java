@@ -0,0 +1,92 @@
+package com.vaadin;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evicts entities from the shared JPA cache of the repository after their rows were
+ * changed with plain JDBC, so the repository does not keep returning stale copies.
+ * Also opens entity managers on the repository's persistence unit for the queries the
+ * repository does not offer.
+ * <p>
+ * The repository does not expose its persistence unit, so the factory is looked up
+ * from its fields once. Reports are written with JDBC and then read through the
+ * repository, so without the factory those reads would be stale: the backend does not
+ * start when it cannot be found.
+ */
+class EntityCache {
+
+    private static final Logger LOGGER = Logger.getLogger(EntityCache.class.getName());
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * @throws BackendException if the repository has no readable EntityManagerFactory
+     */
+    EntityCache(Object repository) {
+        entityManagerFactory = findEntityManagerFactory(repository);
+        if (entityManagerFactory == null) {
+            throw new BackendException("No EntityManagerFactory found in " + repository.getClass().getName()
+                    + ", entities changed with JDBC could not be evicted from its cache");
+        }
+    }
+
+    /**
+     * @return a new entity manager sharing the repository's cache, to be closed by the caller
+     */
+    EntityManager createEntityManager() {
+        return entityManagerFactory.createEntityManager();
+    }
+
+    void evict(Class<?> entityType, Collection<Long> ids) {
+        Cache cache = getCache();
+        if (cache != null) {
+            ids.forEach(id -> cache.evict(entityType, id));
+        }
+    }
+
+    void evictAll(Class<?> entityType) {
+        Cache cache = getCache();
+        if (cache != null) {
+            cache.evict(entityType);
+        }
+    }
+
+    private Cache getCache() {
+        if (!entityManagerFactory.isOpen()) {
+            LOGGER.warning("The EntityManagerFactory is closed, entities changed with JDBC are not evicted");
+            return null;
+        }
+        return entityManagerFactory.getCache();
+    }
+
+    private static EntityManagerFactory findEntityManagerFactory(Object repository) {
+        for (Class<?> type = repository.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                try {
+                    if (EntityManagerFactory.class.isAssignableFrom(field.getType())) {
+                        return (EntityManagerFactory) read(field, repository);
+                    }
+                    if (EntityManager.class.isAssignableFrom(field.getType())) {
+                        EntityManager entityManager = (EntityManager) read(field, repository);
+                        return entityManager != null ? entityManager.getEntityManagerFactory() : null;
+                    }
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not read " + field, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object read(Field field, Object repository) throws IllegalAccessException {
+        field.setAccessible(true);
+        return field.get(Modifier.isStatic(field.getModifiers()) ? null : repository);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vaadin;
+
+import com.vaadin.ui.UI;
+
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Background query of a UI where only the most recently started run matters, such as
+ * loading the reports for the current filter.
+ * <p>
+ * Starting a run cancels the one still in flight if it has not started yet, and the
+ * result of a run that has been superseded is dropped instead of delivered. Must be used with the UI's session
+ * locked.
+ */
+public class LatestQuery<T> {
+
+    private final QueryExecutor executor;
+    private final UI ui;
+
+    private Future<?> running;
+    private long generation;
+
+    public LatestQuery(QueryExecutor executor, UI ui) {
+        this.executor = executor;
+        this.ui = ui;
+    }
+
+    public void run(Supplier<T> query, Consumer<T> onResult, Consumer<RuntimeException> onError) {
+        cancel();
+        long run = generation;
+
+        running = executor.submit(ui, query,
+                result -> {
+                    if (run == generation) {
+                        running = null;
+                        onResult.accept(result);
+                    }
+                },
+                error -> {
+                    if (run == generation) {
+                        running = null;
+                        onError.accept(error);
+                    }
+                });
+    }
+
+    public boolean isRunning() {
+        return running != null;
+    }
+
+    public void cancel() {
+        generation++;
+        if (running != null) {
+            // Never interrupt: an interrupt during file channel I/O closes the channels of
+            // the embedded database. A run that has started finishes and is dropped.
+            running.cancel(false);
+            running = null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.vaadin;
+
+import com.vaadin.navigator.Navigator;
+import com.vaadin.navigator.View;
+import com.vaadin.navigator.ViewChangeListener;
+import com.vaadin.navigator.ViewProvider;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Creates the views of one UI when they are first navigated to, and reuses them for
+ * later navigations.
+ * <p>
+ * A view that has not been shown for {@value #IDLE_MILLIS_PROPERTY} milliseconds is
+ * released on the next navigation and created again when it is needed. The heap
+ * footprint of each view is estimated once after it is first entered and recorded
+ * in {@link Metrics}. The estimate is made on a background thread shared by all UIs,
+ * and is skipped while {@value #MAX_PENDING_ESTIMATES} estimates are waiting.
+ */
+public class LazyViewProvider implements ViewProvider, ViewChangeListener {
+
+    public static final String IDLE_MILLIS_PROPERTY = "bugrap.views.idleMillis";
+    static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000;
+    static final int MAX_PENDING_ESTIMATES = 16;
+
+    private static final ExecutorService FOOTPRINT_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_ESTIMATES),
+            runnable -> {
+                Thread thread = new Thread(runnable, "bugrap-view-footprints");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    private final Metrics metrics;
+    private final long idleMillis;
+    private final Map<String, Supplier<View>> factories = new LinkedHashMap<>();
+    private final Map<String, CachedView> views = new HashMap<>();
+
+    public LazyViewProvider(Navigator navigator, Metrics metrics) {
+        this.metrics = metrics;
+        this.idleMillis = Long.getLong(IDLE_MILLIS_PROPERTY, DEFAULT_IDLE_MILLIS);
+        navigator.addViewChangeListener(this);
+    }
+
+    public void addView(String viewName, Supplier<View> factory) {
+        factories.put(viewName, factory);
+    }
+
+    @Override
+    public String getViewName(String viewAndParameters) {
+        String bestMatch = null;
+        for (String viewName : factories.keySet()) {
+            if ((viewAndParameters.equals(viewName) || viewAndParameters.startsWith(viewName + "/"))
+                    && (bestMatch == null || viewName.length() > bestMatch.length())) {
+                bestMatch = viewName;
+            }
+        }
+        return bestMatch;
+    }
+
+    @Override
+    public View getView(String viewName) {
+        CachedView cached = views.get(viewName);
+        if (cached == null) {
+            Supplier<View> factory = factories.get(viewName);
+            if (factory == null) {
+                return null;
+            }
+            cached = new CachedView(factory.get());
+            views.put(viewName, cached);
+        }
+        cached.lastShown = System.currentTimeMillis();
+        return cached.view;
+    }
+
+    /**
+     * @return the number of views currently held
+     */
+    public int getViewCount() {
+        return views.size();
+    }
+
+    @Override
+    public boolean beforeViewChange(ViewChangeEvent event) {
+        return true;
+    }
+
+    @Override
+    public void afterViewChange(ViewChangeEvent event) {
+        long now = System.currentTimeMillis();
+
+        for (CachedView cached : views.values()) {
+            if (cached.view == event.getOldView() || cached.view == event.getNewView()) {
+                cached.lastShown = now;
+            }
+        }
+
+        Iterator<CachedView> iterator = views.values().iterator();
+        while (iterator.hasNext()) {
+            CachedView cached = iterator.next();
+            if (cached.view != event.getNewView() && now - cached.lastShown > idleMillis) {
+                iterator.remove();
+            }
+        }
+
+        CachedView shown = findCached(event.getNewView());
+        if (shown != null && !shown.measured) {
+            shown.measured = true;
+            View view = shown.view;
+            // Walking the view takes long for large views, so it is not done holding the session lock
+            FOOTPRINT_EXECUTOR.execute(() ->
+                    metrics.viewFootprintSampled(view.getClass().getSimpleName(), estimateFootprint(view)));
+        }
+    }
+
+    private CachedView findCached(View view) {
+        for (CachedView cached : views.values()) {
+            if (cached.view == view) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The UI, the session, the backend and the other views are shared and left out.
+     * Shared reference data shown by the view is counted. The view is read without the
+     * session lock, so the figure is an estimate of a view that may be changing.
+     */
+    private static long estimateFootprint(View view) {
+        return ObjectFootprint.estimate(view, object -> object instanceof UI
+                || object instanceof VaadinSession
+                || object instanceof Backend
+                || object instanceof ReportChangeBus
+                || object instanceof Metrics
+                || object instanceof Thread
+                || object instanceof ClassLoader
+                || object instanceof Navigator
+                || object instanceof LazyViewProvider
+                || (object instanceof View && object != view));
+    }
+
+    private static final class CachedView {
+        private final View view;
+        private long lastShown;
+        private boolean measured;
+
+        private CachedView(View view) {
+            this.view = view;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package com.vaadin;
 
+import com.vaadin.data.provider.ConfigurableFilterDataProvider;
+import com.vaadin.data.provider.DataProvider;
 import com.vaadin.icons.VaadinIcons;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener;
+import com.vaadin.shared.Registration;
+import com.vaadin.server.FileDownloader;
+import com.vaadin.shared.ui.ValueChangeMode;
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.Button;
 import com.vaadin.ui.CheckBoxGroup;
+import com.vaadin.ui.CssLayout;
 import com.vaadin.ui.Label;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Grid;
 import com.vaadin.ui.renderers.DateRenderer;
@@ -17,15 +26,36 @@ import org.vaadin.hene.popupbutton.PopupButton;
 
 import java.text.DateFormat;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by diegocardoso on 3/31/17.
  */
 public class MainPage extends MainPageDesign implements ReportUpdateListener, View {
 
+    private static final int SEARCH_DELAY_MILLIS = 200;
+
+    /**
+     * Reports loaded together with the count when the filter changes, enough for the
+     * rows the grid asks for first
+     */
+    private static final int PREFETCH_ROWS = 50;
+    private static final String LOADING_STYLE = "reports-grid--loading";
+
     private final MyUI myUI;
     private final PopupButton customStatusPopupBtn;
     private final Grid<Report> reportGrid = new Grid<>(Report.class);
+    private final ConfigurableFilterDataProvider<Report, Void, ReportFilter> reportsDataProvider;
+    private final Map<Long, Integer> commentCounts = new HashMap<>();
+    private final LatestQuery<PrefetchedReports> reportsQuery;
+    private final LatestQuery<ReportStatistics> statisticsQuery;
+    private final LatestQuery<GridChanges> gridChangesQuery;
+    private final Set<Long> pendingChangedIds = new HashSet<>();
+    private final Set<Long> pendingCommentedIds = new HashSet<>();
+    private PrefetchedReports prefetched;
+    private int shownCount;
+    private ReportSort sort = ReportSort.BY_ID;
     private final Reporter reporter;
     private final CheckBoxGroup<Report.Status> customStatusOptions;
 
@@ -40,9 +70,14 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
     private Label openedReportsLabel;
     private Label unassignedReportsLabel;
 
+    private Registration reportChangesRegistration;
+
     public MainPage(MyUI myUI, Reporter reporter) {
         this.myUI = myUI;
         this.reporter = reporter;
+        this.reportsQuery = myUI.newLatestQuery();
+        this.statisticsQuery = myUI.newLatestQuery();
+        this.gridChangesQuery = myUI.newLatestQuery();
 
         reportsDetail = new ReportsDetail(myUI, this);
 
@@ -73,6 +108,16 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
 
         statusOptions.addComponent(customStatusPopupBtn);
 
+        //Export of the reports matching the filter, streamed without loading them into the grid
+        Label exportTitle = new Label("Export");
+        CssLayout exportOptions = new CssLayout();
+        exportOptions.addStyleName("v-component-group");
+        exportOptions.addComponents(
+                createExportButton("CSV", ReportExporter.Format.CSV),
+                createExportButton("JSON Lines", ReportExporter.Format.JSON_LINES));
+        reportsFiltering.addComponents(exportTitle, exportOptions);
+        reportsFiltering.setComponentAlignment(exportTitle, Alignment.MIDDLE_CENTER);
+
         List<Project> projectsList = new ArrayList<>(myUI.getProjects());
         Project firstProject = projectsList.get(0);
 
@@ -80,15 +125,29 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         projectSelectorCombo.setSelectedItem(firstProject);
 
         //Grid config and placement
+        reportsDataProvider = DataProvider.<Report, ReportFilter>fromFilteringCallbacks(
+                query -> query.getFilter()
+                        .map(filter -> fetchReports(filter, ReportSort.of(query.getSortOrders()),
+                                query.getOffset(), query.getLimit()).stream())
+                        .orElseGet(Stream::empty),
+                query -> query.getFilter()
+                        .map(this::countReports)
+                        .orElse(0))
+                .withConfigurableFilter();
+        reportGrid.setDataProvider(reportsDataProvider);
+
         reportGrid.setSizeFull();
         reportGrid.setSelectionMode(Grid.SelectionMode.MULTI);
 
+        // Sorting is done by the report query, see ReportSort for the sortable columns
         reportGrid.setColumns("priority", "type", "summary", "assigned");
-        reportGrid.getColumn("assigned").setCaption("Assigned to").setDescriptionGenerator(e -> e.getAssigned() != null? e.getAssigned().getName(): "");
+        reportGrid.getColumn("summary").setSortable(false);
+        reportGrid.getColumn("assigned").setCaption("Assigned to").setSortable(false).setDescriptionGenerator(e -> e.getAssigned() != null? e.getAssigned().getName(): "");
 
         DateFormat dateTimeFormatter = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, Locale.ENGLISH);
-        reportGrid.addColumn(Report::getTimestamp).setCaption("Last modified").setRenderer(new DateRenderer(dateTimeFormatter));
-        reportGrid.addColumn(Report::getReportedTimestamp).setCaption("Reported").setRenderer(new DateRenderer(dateTimeFormatter));
+        reportGrid.addColumn(Report::getTimestamp).setCaption("Last modified").setSortProperty("timestamp").setRenderer(new DateRenderer(dateTimeFormatter));
+        reportGrid.addColumn(Report::getReportedTimestamp).setCaption("Reported").setSortProperty("reportedTimestamp").setRenderer(new DateRenderer(dateTimeFormatter));
+        reportGrid.addColumn(this::getCommentCount).setCaption("Comments").setSortable(false);
 
         tableDetailsSession.addComponent(reportGrid);
 
@@ -125,6 +184,19 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         allKindsStatusBtn.addClickListener(e -> onClickAllKindsStatusBtn());
         customStatusOptions.addSelectionListener(e -> onSelectCustomStatusOptions());
 
+        searchField.setValueChangeMode(ValueChangeMode.LAZY);
+        searchField.setValueChangeTimeout(SEARCH_DELAY_MILLIS);
+        searchField.addValueChangeListener(e -> setReportGridItems());
+        resetSearchBtn.addClickListener(e -> searchField.clear());
+
+        addAttachListener(e -> reportChangesRegistration = myUI.subscribeToReportChanges(this::onReportChanges));
+        addDetachListener(e -> {
+            reportChangesRegistration.remove();
+            reportsQuery.cancel();
+            statisticsQuery.cancel();
+            gridChangesQuery.cancel();
+        });
+
         reportGrid.addSelectionListener( e -> onGridSelection(e.getAllSelectedItems()));
         reportGrid.addItemClickListener(event -> {
             if (event.getMouseEventDetails().isDoubleClick()) {
@@ -135,6 +207,13 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
 
     }
 
+    private Button createExportButton(String caption, ReportExporter.Format format) {
+        Button exportButton = new Button(caption);
+        exportButton.addStyleName("button-flat");
+        new FileDownloader(myUI.getReportExportResource(this::currentFilter, format)).extend(exportButton);
+        return exportButton;
+    }
+
     private void onGridSelection(Set<Report> reportsSelected) {
         if (reportsSelected.size() == 0) {
             reportsDetail.setVisible(false);
@@ -142,7 +221,7 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
             return;
         }
 
-        boolean hasReportSelectedComment = reportsSelected.size() == 1 && myUI.getCommentsByReport(reportsSelected.iterator().next()).size() == 0;
+        boolean hasReportSelectedComment = reportsSelected.size() == 1 && getCommentCount(reportsSelected.iterator().next()) == 0;
         if (reportsSelected.size() > 1 || hasReportSelectedComment) {
             tableDetailsSession.setSplitPosition(80);
         } else {
@@ -153,6 +232,30 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         reportsDetail.setReports(reportsSelected, selectedProject);
     }
 
+    private List<Report> fetchReports(ReportFilter filter, ReportSort sort, int offset, int limit) {
+        this.sort = sort;
+        if (prefetched != null && prefetched.covers(filter, sort, offset, limit)) {
+            return prefetched.reports.subList(offset, Math.min(offset + limit, prefetched.reports.size()));
+        }
+
+        List<Report> reports = myUI.fetchReports(filter, sort, offset, limit);
+        commentCounts.putAll(myUI.getCommentCounts(reports.stream().map(Report::getId).collect(Collectors.toList())));
+
+        return reports;
+    }
+
+    private int countReports(ReportFilter filter) {
+        if (prefetched != null && prefetched.filter.equals(filter)) {
+            return prefetched.count;
+        }
+        return myUI.countReports(filter);
+    }
+
+    private int getCommentCount(Report report) {
+        return commentCounts.computeIfAbsent(report.getId(),
+                id -> myUI.getCommentCounts(Collections.singleton(id)).getOrDefault(id, 0));
+    }
+
     private void loadProject (Project project) {
         Set<ProjectVersion> versionsByProject = myUI.getVersionsByProject(project);
         List<ProjectVersion> versionByProjectList = new ArrayList<>(versionsByProject);
@@ -176,19 +279,22 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         showProjectProgressBar();
     }
 
+    /**
+     * Loads the statistics of the selected project and version in the background and
+     * shows them when they arrive.
+     */
     private void showProjectProgressBar() {
-        long countClosedReports, countOpenedReports, countUnassignedReports, countOfReports;
+        Project project = selectedProject;
+        ProjectVersion version = selectedVersionOrNull();
 
-        if (selectedProjectVersion.getVersion() == "All versions") {
-            countClosedReports = myUI.countClosedReports(selectedProject);
-            countOpenedReports = myUI.countOpenedReports(selectedProject);
-            countUnassignedReports = myUI.countUnassignedReports(selectedProject);
-        } else {
-            countClosedReports = myUI.countClosedReports(selectedProjectVersion);
-            countOpenedReports = myUI.countOpenedReports(selectedProjectVersion);
-            countUnassignedReports = myUI.countUnassignedReports(selectedProjectVersion);
-        }
-        countOfReports = countClosedReports + countOpenedReports + countOpenedReports;
+        statisticsQuery.run(() -> myUI.getReportStatistics(project, version), this::showStatistics, this::onLoadFailed);
+    }
+
+    private void showStatistics(ReportStatistics statistics) {
+        long countClosedReports = statistics.getClosed();
+        long countOpenedReports = statistics.getOpened();
+        long countUnassignedReports = statistics.getUnassigned();
+        long countOfReports = Math.max(statistics.getTotal(), 1);
 
         closedReportsLabel.setValue(String.valueOf(countClosedReports));
         projectProgressContainer.setExpandRatio(closedReportsLabel, countClosedReports * 1.0f / countOfReports);
@@ -200,15 +306,66 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         projectProgressContainer.setExpandRatio(unassignedReportsLabel, countUnassignedReports * 1.0f / countOfReports);
     }
 
+    /**
+     * Counts and loads the first reports for the current filter, in the current order
+     * of the grid, in the background, and only then hands the filter to the grid, which
+     * gets those rows without querying again. The grid is marked as loading meanwhile.
+     */
     private void setReportGridItems() {
-        reportGrid.setItems(myUI.filterReportsByProject(selectedProject, selectedProjectVersion, selectedStatuses));
+        ReportFilter filter = currentFilter();
+        ReportSort sort = this.sort;
+
+        // Reloading covers the changes still waiting to be applied
+        gridChangesQuery.cancel();
+        pendingChangedIds.clear();
+        pendingCommentedIds.clear();
+
+        reportGrid.addStyleName(LOADING_STYLE);
+        reportsQuery.run(() -> prefetchReports(filter, sort), this::showReports, this::onLoadFailed);
+    }
+
+    /**
+     * Runs in the background, so it must not touch any component.
+     */
+    private PrefetchedReports prefetchReports(ReportFilter filter, ReportSort sort) {
+        int count = myUI.countReports(filter);
+        List<Report> reports = count == 0
+                ? Collections.emptyList()
+                : myUI.fetchReports(filter, sort, 0, Math.min(count, PREFETCH_ROWS));
+        Map<Long, Integer> reportCommentCounts = myUI.getCommentCounts(
+                reports.stream().map(Report::getId).collect(Collectors.toList()));
+
+        return new PrefetchedReports(filter, sort, count, reports, reportCommentCounts);
+    }
+
+    private void showReports(PrefetchedReports reports) {
+        prefetched = reports;
+        shownCount = reports.count;
+        commentCounts.clear();
+        commentCounts.putAll(reports.commentCounts);
+
+        reportGrid.removeStyleName(LOADING_STYLE);
+        reportsDataProvider.setFilter(reports.filter);
+    }
+
+    private void onLoadFailed(RuntimeException e) {
+        reportGrid.removeStyleName(LOADING_STYLE);
+        Notification.show("Could not load reports", e.getMessage(), Notification.Type.ERROR_MESSAGE);
+    }
+
+    private ReportFilter currentFilter() {
+        return new ReportFilter(selectedProject, selectedVersionOrNull(), selectedStatuses, selectedAssignee, searchField.getValue());
+    }
+
+    private ProjectVersion selectedVersionOrNull() {
+        return selectedProjectVersion.getVersion() == "All versions" ? null : selectedProjectVersion;
     }
 
     private void onChangeProjectVersion() {
         selectedProjectVersion = projectVersionsCombo.getSelectedItem().get();
         selectedProject = selectedProjectVersion.getProject();
 
-        reportGrid.setItems(myUI.getReportsByProject(selectedProject, selectedProjectVersion));
+        setReportGridItems();
         showProjectProgressBar();
     }
 
@@ -229,7 +386,7 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         selectedStatuses = customStatusOptions.getSelectedItems();
         selectedAssignee = reporter;
 
-        reportGrid.setItems(myUI.filterReportsByProject(selectedProject, selectedProjectVersion, selectedStatuses, selectedAssignee));
+        setReportGridItems();
     }
 
     private void onClickEveryoneBtn() {
@@ -251,7 +408,7 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
         customStatusPopupBtn.addStyleName("button-flat--selected");
         openStatusBtn.removeStyleName("button-flat--selected");
 
-        reportGrid.setItems(myUI.filterReportsByProject(selectedProject, selectedProjectVersion, selectedStatuses, selectedAssignee));
+        setReportGridItems();
     }
 
     private void onClickAllKindsStatusBtn() {
@@ -263,7 +420,7 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
 
         selectedStatuses = customStatusOptions.getSelectedItems();
 
-        reportGrid.setItems(myUI.filterReportsByProject(selectedProject, selectedProjectVersion, selectedStatuses, selectedAssignee));
+        setReportGridItems();
     }
 
     private void onClickOpenStatusBtn() {
@@ -276,19 +433,195 @@ public class MainPage extends MainPageDesign implements ReportUpdateListener, Vi
 
         selectedStatuses = customStatusOptions.getSelectedItems();
 
-        reportGrid.setItems(myUI.filterReportsByProject(selectedProject, selectedProjectVersion, selectedStatuses, selectedAssignee));
+        setReportGridItems();
     }
 
     @Override
     public void onReportUpdate(Report report) {
-        setReportGridItems();
+        refreshReports(Collections.singleton(report.getId()), Collections.emptySet());
+        showProjectProgressBar();
     }
 
     @Override
-    public void onReportsUpdate(Set<Report> report) { setReportGridItems();}
+    public void onReportsUpdate(Set<Report> reports) {
+        refreshReports(reports.stream().map(Report::getId).collect(Collectors.toSet()), Collections.emptySet());
+        showProjectProgressBar();
+    }
+
+    /**
+     * Called when reports were changed in other UIs.
+     */
+    private void onReportChanges(ReportChanges changes) {
+        refreshReports(changes.getReportIds(), changes.getCommentedReportIds());
+        showProjectProgressBar();
+    }
+
+    /**
+     * Finds out in the background how the changed reports affect the rows of the grid
+     * and applies only that. Changes made while a previous run is in flight are merged
+     * into the next run.
+     *
+     * @param changedIds the reports whose fields changed
+     * @param commentedIds the reports that got new comments
+     */
+    private void refreshReports(Set<Long> changedIds, Set<Long> commentedIds) {
+        if (reportsQuery.isRunning()) {
+            // The rows being loaded may predate the changes
+            setReportGridItems();
+            return;
+        }
+
+        pendingChangedIds.addAll(changedIds);
+        pendingCommentedIds.addAll(commentedIds);
+
+        ReportFilter filter = currentFilter();
+        Set<Long> changed = new HashSet<>(pendingChangedIds);
+        Set<Long> commented = new HashSet<>(pendingCommentedIds);
+        gridChangesQuery.run(() -> loadGridChanges(filter, changed, commented), this::applyGridChanges, this::onLoadFailed);
+    }
+
+    /**
+     * Runs in the background, so it must not touch any component.
+     */
+    private GridChanges loadGridChanges(ReportFilter filter, Set<Long> changedIds, Set<Long> commentedIds) {
+        Set<Long> reportIds = new HashSet<>(changedIds);
+        reportIds.addAll(commentedIds);
+
+        int count = myUI.countReports(filter);
+        // Membership in search results is decided by the search index, not by the query
+        Set<Long> matchingIds = filter.hasSearchText() ? null : myUI.filterReportIds(filter, reportIds);
+        List<Report> reports = myUI.reloadReports(matchingIds != null ? matchingIds : reportIds);
+
+        return new GridChanges(count, changedIds, commentedIds, matchingIds, reports, myUI.getCommentCounts(reportIds));
+    }
+
+    /**
+     * Re-renders the changed rows when the grid still shows the same reports in the same
+     * order. Otherwise the grid fetches its rows again, which keeps the scroll position,
+     * and reports that no longer match the filter are deselected.
+     */
+    private void applyGridChanges(GridChanges changes) {
+        pendingChangedIds.removeAll(changes.changedIds);
+        pendingCommentedIds.removeAll(changes.commentedIds);
+        commentCounts.putAll(changes.commentCounts);
+
+        if (changes.keepsRows(shownCount, sort)) {
+            for (Report report : changes.reports) {
+                if (prefetched != null) {
+                    prefetched.replace(report);
+                }
+                reportsDataProvider.refreshItem(report);
+            }
+            return;
+        }
+
+        Set<Long> leftIds = changes.leftIds();
+        reportGrid.getSelectedItems().stream()
+                .filter(report -> leftIds.contains(report.getId()))
+                .collect(Collectors.toList())
+                .forEach(reportGrid::deselect);
+
+        // The prefetched rows may now be at other positions, the count is cached anyway
+        prefetched = null;
+        shownCount = changes.count;
+        reportsDataProvider.refreshAll();
+    }
 
     @Override
     public void enter(ViewChangeListener.ViewChangeEvent viewChangeEvent) {
+        // Comments may have been added on the report page meanwhile
+        if (selectedProject != null) {
+            setReportGridItems();
+        }
+    }
+
+    /**
+     * Count and first rows of the reports matching a filter.
+     */
+    private static final class PrefetchedReports {
+        private final ReportFilter filter;
+        private final ReportSort sort;
+        private final int count;
+        private final List<Report> reports;
+        private final Map<Long, Integer> commentCounts;
+
+        private PrefetchedReports(ReportFilter filter, ReportSort sort, int count, List<Report> reports, Map<Long, Integer> commentCounts) {
+            this.filter = filter;
+            this.sort = sort;
+            this.count = count;
+            this.reports = new ArrayList<>(reports);
+            this.commentCounts = commentCounts;
+        }
 
+        /**
+         * Replaces the prefetched row of the report with its new version, if there is one.
+         */
+        void replace(Report report) {
+            for (int i = 0; i < reports.size(); i++) {
+                if (reports.get(i).getId() == report.getId()) {
+                    reports.set(i, report);
+                    return;
+                }
+            }
+        }
+
+        boolean covers(ReportFilter filter, ReportSort sort, int offset, int limit) {
+            return this.filter.equals(filter) && this.sort.equals(sort)
+                    && (offset + limit <= reports.size() || reports.size() == count);
+        }
+    }
+
+    /**
+     * How changes to some reports affect the reports matching the filter of the grid.
+     */
+    private static final class GridChanges {
+        private final int count;
+        private final Set<Long> changedIds;
+        private final Set<Long> commentedIds;
+        private final Set<Long> matchingIds;
+        private final List<Report> reports;
+        private final Map<Long, Integer> commentCounts;
+
+        /**
+         * @param matchingIds the changed and commented reports matching the filter, or
+         *                    {@code null} if not known
+         * @param reports the changed and commented reports as they are now
+         */
+        private GridChanges(int count, Set<Long> changedIds, Set<Long> commentedIds, Set<Long> matchingIds,
+                            List<Report> reports, Map<Long, Integer> commentCounts) {
+            this.count = count;
+            this.changedIds = changedIds;
+            this.commentedIds = commentedIds;
+            this.matchingIds = matchingIds;
+            this.reports = reports;
+            this.commentCounts = commentCounts;
+        }
+
+        /**
+         * Whether the grid still shows the same reports in the same order. Only the
+         * changed reports can have started or stopped matching the filter, so with an
+         * unchanged count, none did if either none or all of them match.
+         */
+        boolean keepsRows(int shownCount, ReportSort sort) {
+            if (changedIds.isEmpty()) {
+                return true;
+            }
+            if (matchingIds == null || count != shownCount || !sort.isById()) {
+                return false;
+            }
+
+            long matching = changedIds.stream().filter(matchingIds::contains).count();
+            return matching == 0 || matching == changedIds.size();
+        }
+
+        /**
+         * @return the changed reports known not to match the filter
+         */
+        Set<Long> leftIds() {
+            if (matchingIds == null) {
+                return Collections.emptySet();
+            }
+            return changedIds.stream().filter(id -> !matchingIds.contains(id)).collect(Collectors.toSet());
+        }
     }
 }
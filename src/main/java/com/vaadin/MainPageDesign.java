@@ -1,10 +1,12 @@
 package com.vaadin;
 
-import com.vaadin.annotations.AutoGenerated;
-import com.vaadin.annotations.DesignRoot;
-import com.vaadin.ui.declarative.Design;
+import com.vaadin.icons.VaadinIcons;
+import com.vaadin.server.Sizeable;
+import com.vaadin.shared.ui.ContentMode;
+import com.vaadin.ui.Alignment;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.Label;
 import com.vaadin.ui.Link;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.ComboBox;
@@ -13,17 +15,24 @@ import com.vaadin.ui.VerticalSplitPanel;
 import com.vaadin.ui.CssLayout;
 
 /**
- * !! DO NOT EDIT THIS FILE !!
+ * The components of {@code MainPageDesign.html}, built in code instead of with
+ * {@code Design.read}, so creating a main page parses no HTML and binds no fields by
+ * reflection.
  * <p>
- * This class is generated by Vaadin Designer and will be overwritten.
+ * Keep in sync with the design: Vaadin Designer regenerates this class with
+ * {@code Design.read} when the design is saved.
  * <p>
  * Please make a subclass with logic and additional interfaces as needed,
  * e.g class LoginView extends LoginDesign implements View { }
  */
-@DesignRoot
-@AutoGenerated
 @SuppressWarnings("serial")
 public class MainPageDesign extends VerticalLayout {
+
+    private static final VaadinIcons ACCOUNT_ICON = DesignIcons.vaadinIcon(0xe80d);
+    private static final VaadinIcons LOGOUT_ICON = DesignIcons.vaadinIcon(0xe6ac);
+    private static final VaadinIcons SEARCH_ICON = DesignIcons.vaadinIcon(0xe805);
+    private static final VaadinIcons RESET_SEARCH_ICON = DesignIcons.vaadinIcon(0xe7ad);
+
     protected HorizontalLayout header;
     protected ComboBox<org.vaadin.bugrap.domain.entities.Project> projectSelectorCombo;
     protected Button accountNameBtn;
@@ -46,6 +55,151 @@ public class MainPageDesign extends VerticalLayout {
     protected VerticalSplitPanel tableDetailsSession;
 
     public MainPageDesign() {
-        Design.read(this);
+        setSpacing(false);
+        setSizeFull();
+        setMargin(false);
+
+        buildHeader();
+        buildMenu();
+        buildReportsDetails();
+        buildReportsFiltering();
+
+        tableDetailsSession = new VerticalSplitPanel();
+        tableDetailsSession.setSplitPosition(100, Sizeable.Unit.PERCENTAGE);
+        addComponent(tableDetailsSession);
+        setExpandRatio(tableDetailsSession, 1);
+    }
+
+    private void buildHeader() {
+        header = new HorizontalLayout();
+        header.setStyleName("bugrap-header");
+        header.setWidth("100%");
+        header.setMargin(true);
+
+        projectSelectorCombo = new ComboBox<>();
+        projectSelectorCombo.setEmptySelectionAllowed(false);
+        projectSelectorCombo.setStyleName("bugrap-header__projects borderless");
+        projectSelectorCombo.setWidth("100%");
+        header.addComponent(projectSelectorCombo);
+        header.setExpandRatio(projectSelectorCombo, 1);
+
+        accountNameBtn = createButton("Marc Manager", ACCOUNT_ICON, "borderless small");
+        header.addComponent(accountNameBtn);
+        header.setComponentAlignment(accountNameBtn, Alignment.MIDDLE_CENTER);
+
+        Button logoutBtn = createButton("Logout", LOGOUT_ICON, "borderless small");
+        header.addComponent(logoutBtn);
+        header.setComponentAlignment(logoutBtn, Alignment.MIDDLE_CENTER);
+
+        addComponent(header);
+    }
+
+    private void buildMenu() {
+        menu = new HorizontalLayout();
+        menu.setStyleName("bugrap-menu");
+        menu.setWidth("100%");
+
+        reportBugLink = createMenuLink("Report a bug");
+        requestFeatureLink = createMenuLink("Request a feature");
+        manageProjectLink = createMenuLink("Manage project");
+
+        Label menuLabel = createLabel("123");
+        menuLabel.setStyleName("bugrap-menu__label");
+        menu.addComponent(menuLabel);
+        menu.setComponentAlignment(menuLabel, Alignment.MIDDLE_CENTER);
+
+        CssLayout searchGroup = new CssLayout();
+        searchGroup.setStyleName("v-component-group");
+        searchGroup.setWidth("100%");
+
+        searchField = new TextField();
+        searchField.setIcon(SEARCH_ICON);
+        searchField.setStyleName("inline-icon");
+        searchField.setPlaceholder("Search reports...");
+        searchField.setWidth("95%");
+        searchGroup.addComponent(searchField);
+
+        resetSearchBtn = createButton("", RESET_SEARCH_ICON, "borderless icon-only");
+        searchGroup.addComponent(resetSearchBtn);
+
+        menu.addComponent(searchGroup);
+        menu.setComponentAlignment(searchGroup, Alignment.MIDDLE_RIGHT);
+        menu.setExpandRatio(searchGroup, 1);
+
+        addComponent(menu);
+    }
+
+    private Link createMenuLink(String caption) {
+        Link link = new Link();
+        link.setCaption(caption);
+        link.setStyleName("bugrap-menu__item");
+        menu.addComponent(link);
+        menu.setComponentAlignment(link, Alignment.MIDDLE_CENTER);
+        return link;
+    }
+
+    private void buildReportsDetails() {
+        reportsDetails = new HorizontalLayout();
+        reportsDetails.setStyleName("bugrap-project-versions");
+        reportsDetails.setWidth("100%");
+
+        Label reportsForLabel = createLabel("Reports for");
+        reportsDetails.addComponent(reportsForLabel);
+        reportsDetails.setComponentAlignment(reportsForLabel, Alignment.MIDDLE_LEFT);
+
+        projectVersionsCombo = new ComboBox<>();
+        projectVersionsCombo.setEmptySelectionAllowed(false);
+        projectVersionsCombo.setStyleName("borderless");
+        reportsDetails.addComponent(projectVersionsCombo);
+
+        projectProgressContainer = new HorizontalLayout();
+        projectProgressContainer.setStyleName("bugrap-project-versions__progress");
+        projectProgressContainer.setSpacing(false);
+        projectProgressContainer.setWidth("100%");
+        reportsDetails.addComponent(projectProgressContainer);
+        reportsDetails.setComponentAlignment(projectProgressContainer, Alignment.MIDDLE_RIGHT);
+        reportsDetails.setExpandRatio(projectProgressContainer, 1);
+
+        addComponent(reportsDetails);
+    }
+
+    private void buildReportsFiltering() {
+        reportsFiltering = new HorizontalLayout();
+        reportsFiltering.setStyleName("bugrap-filters");
+
+        addFilterTitle("Assignees");
+        assigneesOptions = new CssLayout();
+        assigneesOptions.setStyleName("v-component-group");
+        everyoneAssigneeBtn = createButton("Everyone", null, "button-flat");
+        onlyMeAssigneeBtn = createButton("Only me", null, "button-flat");
+        assigneesOptions.addComponents(everyoneAssigneeBtn, onlyMeAssigneeBtn);
+        reportsFiltering.addComponent(assigneesOptions);
+
+        addFilterTitle("Status");
+        statusOptions = new CssLayout();
+        statusOptions.setStyleName("v-component-group");
+        allKindsStatusBtn = createButton("All kinds", null, "button-flat");
+        openStatusBtn = createButton("Open", null, "button-flat");
+        statusOptions.addComponents(allKindsStatusBtn, openStatusBtn);
+        reportsFiltering.addComponent(statusOptions);
+
+        addComponent(reportsFiltering);
+    }
+
+    private void addFilterTitle(String title) {
+        Label label = createLabel(title);
+        reportsFiltering.addComponent(label);
+        reportsFiltering.setComponentAlignment(label, Alignment.MIDDLE_CENTER);
+    }
+
+    private static Button createButton(String caption, VaadinIcons icon, String styleName) {
+        Button button = new Button(caption);
+        button.setIcon(icon);
+        button.setStyleName(styleName);
+        return button;
+    }
+
+    private static Label createLabel(String text) {
+        return new Label(text, ContentMode.TEXT);
     }
 }
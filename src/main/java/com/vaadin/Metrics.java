@@ -0,0 +1,225 @@
+package com.vaadin;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timings of the backend calls made through {@link MyUI}, the caches of the backend,
+ * the estimated heap footprint of the views and the attachment bytes sent to clients.
+ * <p>
+ * Everything is published as MBeans under {@value #JMX_DOMAIN} and can be written as
+ * plain text for {@link MyUI.MyUIServlet}. Calls slower than the configured threshold
+ * are logged with their parameters.
+ */
+public class Metrics {
+
+    public static final String SLOW_CALL_PROPERTY = "bugrap.metrics.slowCallMillis";
+    static final long DEFAULT_SLOW_CALL_MILLIS = 500;
+
+    private static final String JMX_DOMAIN = "com.vaadin.bugrap";
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+
+    private final long slowCallNanos;
+    private final Map<String, CallMetrics> calls = new ConcurrentSkipListMap<>();
+    private final Map<String, CacheMetrics> caches = new ConcurrentSkipListMap<>();
+    private final Map<String, ViewFootprint> views = new ConcurrentSkipListMap<>();
+    private final LongAdder attachmentBytes = new LongAdder();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private final Set<String> registering = ConcurrentHashMap.newKeySet();
+    private volatile boolean publishing;
+
+    /**
+     * @param slowCallMillis calls taking at least this long are logged, negative to
+     *                       log none
+     */
+    public Metrics(long slowCallMillis) {
+        this.slowCallNanos = slowCallMillis < 0 ? Long.MAX_VALUE : slowCallMillis * 1_000_000;
+    }
+
+    /**
+     * Runs and times a call. Collections and maps returned by the call count as that
+     * many rows, any other result as one.
+     *
+     * @param parameters describes the call for the slow call log, or {@code null}
+     */
+    public <T> T time(String call, Supplier<String> parameters, Supplier<T> work) {
+        long started = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = work.get();
+            failed = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - started;
+            getCall(call).record(nanos, rowsOf(result), failed);
+
+            if (nanos >= slowCallNanos) {
+                LOGGER.warning(String.format("Slow call %s took %d ms%s", call, nanos / 1_000_000,
+                        parameters != null ? ": " + parameters.get() : ""));
+            }
+        }
+    }
+
+    public void addCache(String name, LruCache<?, ?> cache) {
+        CacheMetrics metrics = new CacheMetrics(name, cache);
+        caches.put(name, metrics);
+        if (publishing) {
+            register("Cache", name, metrics);
+        }
+    }
+
+    public void viewFootprintSampled(String view, long bytes) {
+        ViewFootprint footprint = views.get(view);
+        if (footprint == null) {
+            footprint = views.computeIfAbsent(view, ViewFootprint::new);
+            if (publishing) {
+                register("View", view, footprint);
+            }
+        }
+        footprint.record(bytes);
+    }
+
+    public void attachmentBytesSent(long bytes) {
+        attachmentBytes.add(bytes);
+    }
+
+    public long getAttachmentBytesSent() {
+        return attachmentBytes.sum();
+    }
+
+    public Collection<CallMetrics> getCalls() {
+        return calls.values();
+    }
+
+    public Collection<CacheMetrics> getCaches() {
+        return caches.values();
+    }
+
+    public Collection<ViewFootprint> getViewFootprints() {
+        return views.values();
+    }
+
+    /**
+     * Registers the MBeans of everything measured so far, and of whatever is added
+     * later, with the platform MBean server.
+     */
+    public synchronized void publish() {
+        publishing = true;
+        calls.forEach((name, metrics) -> register("Call", name, metrics));
+        caches.forEach((name, metrics) -> register("Cache", name, metrics));
+        views.forEach((name, footprint) -> register("View", name, footprint));
+    }
+
+    public synchronized void unpublish() {
+        publishing = false;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Could not unregister " + name, e);
+            }
+        }
+        registered.clear();
+        registering.clear();
+    }
+
+    /**
+     * Writes every metric as a {@code name{labels} value} line.
+     */
+    public void writeText(PrintWriter out) {
+        for (CallMetrics call : calls.values()) {
+            String labels = "{call=\"" + call.getName() + "\"}";
+            out.println("bugrap_call_count" + labels + " " + call.getCount());
+            out.println("bugrap_call_errors" + labels + " " + call.getErrorCount());
+            out.println("bugrap_call_rows" + labels + " " + call.getRowCount());
+            out.println("bugrap_call_mean_ms" + labels + " " + call.getMeanMillis());
+            out.println("bugrap_call_max_ms" + labels + " " + call.getMaxMillis());
+
+            long[] buckets = call.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                String bound = i < CallMetrics.BUCKET_MILLIS.length ? String.valueOf(CallMetrics.BUCKET_MILLIS[i]) : "+Inf";
+                out.println("bugrap_call_ms_bucket{call=\"" + call.getName() + "\",le=\"" + bound + "\"} " + cumulative);
+            }
+        }
+
+        for (CacheMetrics cache : caches.values()) {
+            String labels = "{cache=\"" + cache.getName() + "\"}";
+            out.println("bugrap_cache_size" + labels + " " + cache.getSize());
+            out.println("bugrap_cache_hits" + labels + " " + cache.getHitCount());
+            out.println("bugrap_cache_misses" + labels + " " + cache.getMissCount());
+            out.println("bugrap_cache_evictions" + labels + " " + cache.getEvictionCount());
+            out.println("bugrap_cache_hit_ratio" + labels + " " + cache.getHitRatio());
+        }
+
+        for (ViewFootprint view : views.values()) {
+            String labels = "{view=\"" + view.getName() + "\"}";
+            out.println("bugrap_view_footprint_samples" + labels + " " + view.getSampleCount());
+            out.println("bugrap_view_footprint_mean_bytes" + labels + " " + view.getMeanBytes());
+            out.println("bugrap_view_footprint_max_bytes" + labels + " " + view.getMaxBytes());
+        }
+
+        out.println("bugrap_attachment_bytes_sent " + getAttachmentBytesSent());
+    }
+
+    private CallMetrics getCall(String name) {
+        CallMetrics metrics = calls.get(name);
+        if (metrics == null) {
+            metrics = calls.computeIfAbsent(name, CallMetrics::new);
+            if (publishing) {
+                register("Call", name, metrics);
+            }
+        }
+        return metrics;
+    }
+
+    private void register(String type, String name, Object mbean) {
+        // A call first made on several threads at once is registered only once
+        if (!registering.add(type + "/" + name)) {
+            return;
+        }
+
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            synchronized (this) {
+                registered.add(objectName);
+            }
+        } catch (InstanceAlreadyExistsException e) {
+            LOGGER.fine("MBean already registered, probably by another deployment: " + type + " " + name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register MBean for " + type + " " + name, e);
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        return 1;
+    }
+}
@@ -1,6 +1,9 @@
 package com.vaadin;
 
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
@@ -9,13 +12,21 @@ import com.vaadin.annotations.VaadinServletConfiguration;
 import com.vaadin.navigator.Navigator;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.Registration;
 import com.vaadin.ui.UI;
-import com.vaadin.ui.VerticalLayout;
 import org.vaadin.bugrap.domain.BugrapRepository;
 import org.vaadin.bugrap.domain.entities.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This UI is the application entry point. A UI may either represent a browser window 
@@ -30,27 +41,42 @@ import java.util.Set;
 public class MyUI extends UI {
 
     /**
-     * Backend access point
+     * Backend access point, shared by every UI of the servlet
      */
-    private final BugrapRepository repo = new BugrapRepository("/var/tmp/bugrap");
-    private MainPage mainPage;
+    private Backend backend;
     private Reporter reporterSignedOn;
+    /**
+     * Context path of the servlet, kept for building URLs outside of requests
+     */
+    private String contextPath = "";
 
     private Navigator navigator;
     final private String REPORT_PAGE = "report";
 
+    public MyUI() {
+    }
+
+    MyUI(Backend backend) {
+        this.backend = backend;
+    }
+
     @Override
     protected void init(VaadinRequest request) {
 
         navigator = new Navigator(this, this);
+        contextPath = request.getContextPath();
 
-        // initialize backend
-        repo.populateWithTestData();
+        if (backend == null) {
+            backend = ((MyUIServlet) VaadinServlet.getCurrent()).getBackend();
+        }
         reporterSignedOn = getAllReporters().iterator().next();
         setSizeFull();
 
-        navigator.addView("", new MainPage(this, reporterSignedOn));
-        navigator.addView(REPORT_PAGE, new ReportPage(this));
+        // Views are only built when they are first navigated to
+        LazyViewProvider viewProvider = new LazyViewProvider(navigator, backend.getMetrics());
+        viewProvider.addView("", () -> new MainPage(this, reporterSignedOn));
+        viewProvider.addView(REPORT_PAGE, () -> new ReportPage(this));
+        navigator.addProvider(viewProvider);
 
     }
 
@@ -58,18 +84,24 @@ public class MyUI extends UI {
         navigator.navigateTo(REPORT_PAGE + "/" + report.getId());
     }
 
+    /**
+     * @return the reporters, shared by all sessions and not modifiable
+     */
     public Set<Reporter> getAllReporters() {
-        return repo.findReporters();
+        return timed("findReporters", () -> backend.getReferenceData().getReporters());
     }
 
+    /**
+     * @return the projects, shared by all sessions and not modifiable
+     */
     public Set<Project> getProjects() {
-        return repo.findProjects();
+        return timed("findProjects", () -> backend.getReferenceData().getProjects());
     }
 
     public Set<Report> getReportsByProject(Project project, ProjectVersion projectVersion) {
         BugrapRepository.ReportsQuery reportsQuery = buildReportsQuery(project, projectVersion);
 
-        return repo.findReports(reportsQuery);
+        return findReports(reportsQuery);
     }
 
     private BugrapRepository.ReportsQuery buildReportsQuery(Project project, ProjectVersion projectVersion) {
@@ -88,7 +120,7 @@ public class MyUI extends UI {
         if (reportStatuses.size() != 0) {
             reportsQuery.reportStatuses = reportStatuses;
         }
-        return repo.findReports(reportsQuery);
+        return findReports(reportsQuery);
     }
 
     public Set<Report> filterReportsByProject(Project project, ProjectVersion projectVersion, Set<Report.Status> reportStatuses, Reporter reporter) {
@@ -101,55 +133,260 @@ public class MyUI extends UI {
             reportsQuery.reportStatuses = reportStatuses;
         }
 
-        return repo.findReports(reportsQuery);
+        return findReports(reportsQuery);
+    }
+
+    /**
+     * Reads the matching ids from the shared {@link ReportQueryCache} and loads the
+     * reports in batches, and only runs the query itself for results too large to be
+     * cached.
+     */
+    private Set<Report> findReports(BugrapRepository.ReportsQuery reportsQuery) {
+        return timed("findReports", () -> describe(reportsQuery), () -> {
+            ReportFilter filter = new ReportFilter(reportsQuery.project, reportsQuery.projectVersion,
+                    reportsQuery.reportStatuses, reportsQuery.reportAssignee);
+            List<Long> reportIds = backend.getQueryCache().findAllReportIds(filter);
+
+            return reportIds != null
+                    ? new LinkedHashSet<>(backend.findReportsById(reportIds))
+                    : backend.withRepository(repo -> repo.findReports(reportsQuery));
+        });
+    }
+
+    /**
+     * Loads one page of the reports matching the filter.
+     */
+    public List<Report> fetchReports(ReportFilter filter, ReportSort sort, int offset, int limit) {
+        return timed("fetchReports", () -> filter + ", sort=" + sort + ", offset=" + offset + ", limit=" + limit, () -> {
+            return backend.findReportsById(backend.findReportIds(filter, sort, offset, limit));
+        });
+    }
+
+    public Map<Long, Integer> getCommentCounts(Collection<Long> reportIds) {
+        return timed("getCommentCounts", () -> backend.getCommentCounts(reportIds));
     }
 
+    public int countReports(ReportFilter filter) {
+        return timed("countReports", filter::toString, () -> backend.countReports(filter));
+    }
+
+    /**
+     * Returns the ids of the given reports that match the filter. The search text of the
+     * filter is not taken into account.
+     */
+    public Set<Long> filterReportIds(ReportFilter filter, Collection<Long> reportIds) {
+        return timed("filterReportIds", filter::toString,
+                () -> backend.getReportQueries().filterReportIds(filter, reportIds));
+    }
+
+    /**
+     * @return the versions of the project, shared by all sessions and not modifiable
+     */
     public Set<ProjectVersion> getVersionsByProject (Project project) {
-        return repo.findProjectVersions(project);
+        return timed("findProjectVersions", () -> backend.getReferenceData().getVersions(project));
     }
 
     public Report getReportById(long reportId) {
-        return repo.getReportById(reportId);
+        return timed("getReportById", () -> backend.withRepository(repo -> repo.getReportById(reportId)));
     }
 
-    public Report saveReport (Report report) { return repo.save(report); }
+
+    /**
+     * Writes the fields changed by the edit to the reports. Reports whose edited fields
+     * someone else changed meanwhile are not updated and come back as conflicts.
+     *
+     * @param reports the reports with the values the edit started from
+     */
+    public ReportEditResult updateReports(Collection<Report> reports, ReportEdit edit) {
+        return timed("updateReports", () -> edit + " on " + reports.size() + " reports",
+                () -> backend.updateReports(reports, edit, BatchProgressListener.NONE));
+    }
+
+    /**
+     * Loads the reports again, with the values other users may have saved meanwhile.
+     */
+    public List<Report> reloadReports(Collection<Long> reportIds) {
+        return timed("reloadReports", () -> backend.findReportsById(new ArrayList<>(reportIds)));
+    }
 
     public Comment saveComment (Comment comment) {
-        return repo.save(comment);
+        return saveComment(comment, null);
+    }
+
+    public Comment saveComment (Comment comment, AttachmentStore.StoredBlob attachment) {
+        return timed("saveComment", () -> backend.saveComment(comment, attachment));
     }
 
-    public List<Comment> getCommentsByReport(Report report) { return repo.findComments(report); }
+    /**
+     * Returns an attachment finished through the {@link ChunkedUploadHandler} of this
+     * session, or {@code null} if the upload is unknown or not finished.
+     */
+    public ChunkedUploadHandler.ChunkedUpload takeChunkedUpload(String token) {
+        return MyUIServlet.chunkedUploadHandler(getSession()).takeCompleted(token);
+    }
+
+    /**
+     * @return the URL of the {@link ChunkedUploadHandler} of the session
+     */
+    public String getChunkedUploadUrl() {
+        return contextPath + "/" + ChunkedUploadHandler.PATH;
+    }
+
+    /**
+     * @return the URL the attachment of the comment is downloaded from, see
+     * {@link AttachmentDownloadHandler}
+     */
+    public String getAttachmentUrl(long commentId, String attachmentName) {
+        return contextPath + "/" + AttachmentDownloadHandler.path(commentId, attachmentName);
+    }
+
+    /**
+     * @param filter supplies the filter of the reports to export when the download starts
+     */
+    public ReportExportResource getReportExportResource(Supplier<ReportFilter> filter, ReportExporter.Format format) {
+        return new ReportExportResource(backend, filter, format);
+    }
+
+    /**
+     * Loads a page of the comments of a report, newest first.
+     *
+     * @param olderThan the last comment of the previous page, or {@code null} for the
+     *                  newest comments
+     */
+    public List<CommentRow> fetchComments(Report report, CommentRow olderThan, int limit) {
+        return timed("fetchComments", () -> backend.getCommentQueries().findComments(report.getId(), olderThan, limit));
+    }
+
+    public List<Comment> getCommentsByReport(Report report) {
+        return timed("findComments", () -> backend.withRepository(repo -> repo.findComments(report)));
+    }
+
+    /**
+     * Creates a background query whose results are delivered to this UI, where a new
+     * run replaces the one still in flight.
+     */
+    public <T> LatestQuery<T> newLatestQuery() {
+        return new LatestQuery<>(backend.getQueryExecutor(), this);
+    }
+
+    /**
+     * Subscribes to changes made to reports in other UIs. The listener is called with
+     * this UI's session locked.
+     */
+    public Registration subscribeToReportChanges(Consumer<ReportChanges> listener) {
+        return backend.getChangeBus().subscribe(this, listener);
+    }
 
     public Reporter getReporterSignedOn() {
         return reporterSignedOn;
     }
 
+    /**
+     * @param projectVersion the version, or {@code null} for all versions of the project
+     */
+    public ReportStatistics getReportStatistics(Project project, ProjectVersion projectVersion) {
+        return timed("getReportStatistics",
+                () -> backend.getStatisticsCache().get(project.getId(), projectVersion != null ? projectVersion.getId() : null));
+    }
+
     public long countClosedReports (Project project) {
-        return  repo.countClosedReports(project);
+        return timed("countClosedReports", () -> backend.withRepository(repo -> repo.countClosedReports(project)));
     }
 
     public long countClosedReports (ProjectVersion projectVersion) {
-        return repo.countClosedReports(projectVersion);
+        return timed("countClosedReports", () -> backend.withRepository(repo -> repo.countClosedReports(projectVersion)));
     }
 
     public long countOpenedReports (Project project) {
-        return  repo.countOpenedReports(project);
+        return timed("countOpenedReports", () -> backend.withRepository(repo -> repo.countOpenedReports(project)));
     }
 
     public long countOpenedReports (ProjectVersion projectVersion) {
-        return repo.countOpenedReports(projectVersion);
+        return timed("countOpenedReports", () -> backend.withRepository(repo -> repo.countOpenedReports(projectVersion)));
     }
 
     public long countUnassignedReports (Project project) {
-        return  repo.countUnassignedReports(project);
+        return timed("countUnassignedReports", () -> backend.withRepository(repo -> repo.countUnassignedReports(project)));
     }
 
     public long countUnassignedReports (ProjectVersion projectVersion) {
-        return repo.countUnassignedReports(projectVersion);
+        return timed("countUnassignedReports", () -> backend.withRepository(repo -> repo.countUnassignedReports(projectVersion)));
+    }
+
+    private <T> T timed(String call, Supplier<T> work) {
+        return backend.getMetrics().time(call, null, work);
+    }
+
+    private <T> T timed(String call, Supplier<String> parameters, Supplier<T> work) {
+        return backend.getMetrics().time(call, parameters, work);
+    }
+
+    private static String describe(BugrapRepository.ReportsQuery query) {
+        return "ReportsQuery{project=" + (query.project != null ? query.project.getId() : null)
+                + ", version=" + (query.projectVersion != null ? query.projectVersion.getId() : "all")
+                + ", statuses=" + query.reportStatuses
+                + ", assignee=" + (query.reportAssignee != null ? query.reportAssignee.getId() : "everyone")
+                + "}";
     }
 
     @WebServlet(urlPatterns = "/*", name = "MyUIServlet", asyncSupported = true)
     @VaadinServletConfiguration(ui = MyUI.class, productionMode = false)
     public static class MyUIServlet extends VaadinServlet {
+
+        /**
+         * Set to false to not serve the metrics as text on {@value #METRICS_PATH}
+         */
+        public static final String METRICS_ENDPOINT_PROPERTY = "bugrap.metrics.endpoint";
+        static final String METRICS_PATH = "/metrics";
+
+        private Backend backend;
+
+        @Override
+        protected void servletInitialized() throws ServletException {
+            super.servletInitialized();
+
+            backend = Backend.fromSystemProperties();
+            backend.start();
+
+            AttachmentDownloadHandler attachmentDownloadHandler = new AttachmentDownloadHandler(backend);
+            getService().addSessionInitListener(e -> {
+                e.getSession().addRequestHandler(new ChunkedUploadHandler(backend.getAttachmentStore()));
+                e.getSession().addRequestHandler(attachmentDownloadHandler);
+            });
+            getService().addSessionDestroyListener(e -> chunkedUploadHandler(e.getSession()).abortAll());
+        }
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+            if (METRICS_PATH.equals(request.getPathInfo())
+                    && Boolean.parseBoolean(System.getProperty(METRICS_ENDPOINT_PROPERTY, "true"))) {
+                response.setContentType("text/plain; charset=UTF-8");
+                response.setHeader("Cache-Control", "no-cache");
+                backend.getMetrics().writeText(response.getWriter());
+                return;
+            }
+            super.service(request, response);
+        }
+
+        @Override
+        public void destroy() {
+            super.destroy();
+
+            if (backend != null) {
+                backend.stop();
+            }
+        }
+
+        public Backend getBackend() {
+            return backend;
+        }
+
+        static ChunkedUploadHandler chunkedUploadHandler(VaadinSession session) {
+            return session.getRequestHandlers().stream()
+                    .filter(ChunkedUploadHandler.class::isInstance)
+                    .map(ChunkedUploadHandler.class::cast)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No chunked upload handler in the session"));
+        }
     }
 }
@@ -0,0 +1,173 @@
+package com.vaadin;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Estimates the heap retained by an object graph by walking its fields.
+ * <p>
+ * Sizes assume a 64-bit JVM with compressed references: 12 byte object headers,
+ * 16 byte array headers, 4 byte references and 8 byte alignment. Objects for which
+ * the boundary predicate answers true are shared with other graphs, so they and
+ * everything only reachable through them are not counted.
+ * <p>
+ * From Java 9 on the fields of JDK classes cannot be read by reflection. Such objects
+ * are still counted with all their declared fields, and the contents of strings,
+ * collections and maps are sized from their public API: one byte per character and
+ * the backing arrays and entries of the common JDK implementations. The result is an
+ * estimate, not a bound. The walk stops after {@value #MAX_OBJECTS} objects.
+ */
+final class ObjectFootprint {
+
+    static final int MAX_OBJECTS = 500_000;
+
+    private static final Map<Class<?>, ClassLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    private ObjectFootprint() {
+    }
+
+    static long estimate(Object root, Predicate<Object> boundary) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        long bytes = 0;
+
+        while (!pending.isEmpty() && visited.size() < MAX_OBJECTS) {
+            Object object = pending.pop();
+            if (!visited.add(object)) {
+                continue;
+            }
+
+            try {
+                bytes += visit(object, pending, boundary);
+            } catch (RuntimeException e) {
+                // The graph is walked while it may change, e.g. a collection being modified
+            }
+        }
+        return bytes;
+    }
+
+    private static long visit(Object object, Deque<Object> pending, Predicate<Object> boundary) {
+        Class<?> type = object.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(object);
+            Class<?> component = type.getComponentType();
+            if (!component.isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    push(pending, Array.get(object, i), object, boundary);
+                }
+            }
+            return align(16 + (long) length * sizeOf(component));
+        }
+
+        ClassLayout layout = LAYOUTS.computeIfAbsent(type, ClassLayout::new);
+        long bytes = layout.shallowSize;
+        for (Field field : layout.readableReferences) {
+            try {
+                push(pending, field.get(object), object, boundary);
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        if (layout.complete) {
+            return bytes;
+        }
+
+        // Fields of JDK classes that could not be followed
+        if (object instanceof String) {
+            bytes += align(16 + ((String) object).length());
+        } else if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            bytes += hashTable(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                push(pending, entry.getKey(), object, boundary);
+                push(pending, entry.getValue(), object, boundary);
+            }
+        } else if (object instanceof Collection) {
+            Collection<?> collection = (Collection<?>) object;
+            bytes += object instanceof Set ? hashTable(collection.size()) : align(16 + 4L * collection.size());
+            for (Object element : collection) {
+                push(pending, element, object, boundary);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The table of a hash map at the default load factor, with one 32 byte node per entry.
+     */
+    private static long hashTable(int size) {
+        long capacity = Math.max(16, Long.highestOneBit(Math.max(1, size * 4L / 3)) * 2);
+        return align(16 + 4 * capacity) + 32L * size;
+    }
+
+    private static void push(Deque<Object> pending, Object value, Object owner, Predicate<Object> boundary) {
+        if (value != null && value != owner && !(value instanceof Class) && !boundary.test(value)) {
+            pending.push(value);
+        }
+    }
+
+    private static long sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return 4;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * The instance size of a class and the reference fields that can be read.
+     */
+    private static final class ClassLayout {
+        private final long shallowSize;
+        private final List<Field> readableReferences = new ArrayList<>();
+        private final boolean complete;
+
+        ClassLayout(Class<?> type) {
+            long size = 12;
+            boolean allReadable = true;
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    size += sizeOf(field.getType());
+                    if (field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        readableReferences.add(field);
+                    } catch (RuntimeException e) {
+                        allReadable = false;
+                    }
+                }
+            }
+            this.shallowSize = align(size);
+            this.complete = allReadable;
+        }
+    }
+}
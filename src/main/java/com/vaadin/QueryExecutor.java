@@ -0,0 +1,75 @@
+package com.vaadin;
+
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs data queries away from the request thread, so the session lock is not held
+ * while the database works, and hands the results back through
+ * {@link UI#access(Runnable)}.
+ * <p>
+ * Queries run on virtual threads when the JVM has them, and otherwise on a fixed
+ * pool of daemon threads. Either way, the number of queries reaching the database at
+ * once is bounded by the connection pool and the repository permits of
+ * {@link Backend}.
+ */
+public class QueryExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryExecutor.class.getName());
+
+    private final ExecutorService executor;
+
+    public QueryExecutor(int platformThreads) {
+        this.executor = newExecutor(platformThreads);
+    }
+
+    /**
+     * Runs the query in the background and passes its result, or what it threw, to
+     * one of the callbacks with the UI's session locked. Nothing is delivered once
+     * the UI is detached.
+     */
+    public <T> Future<?> submit(UI ui, Supplier<T> query, Consumer<T> onResult, Consumer<RuntimeException> onError) {
+        return executor.submit(() -> {
+            Runnable delivery;
+            try {
+                T result = query.get();
+                delivery = () -> onResult.accept(result);
+            } catch (RuntimeException e) {
+                delivery = () -> onError.accept(e);
+            }
+
+            try {
+                ui.access(delivery);
+            } catch (UIDetachedException e) {
+                LOGGER.log(Level.FINE, "UI detached before a query result was delivered", e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newExecutor(int platformThreads) {
+        try {
+            // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21 on
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(platformThreads, runnable -> {
+                Thread thread = new Thread(runnable, "bugrap-query-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
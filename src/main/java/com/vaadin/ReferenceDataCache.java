@@ -0,0 +1,62 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Project;
+import org.vaadin.bugrap.domain.entities.ProjectVersion;
+import org.vaadin.bugrap.domain.entities.Reporter;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Application wide cache of the projects, project versions and reporters, which
+ * rarely change and are needed by every UI.
+ * <p>
+ * The cached sets are unmodifiable and shared by all sessions. The application never
+ * writes reference data itself, so {@link Backend} only invalidates the cache when it
+ * starts and after an import that added projects, versions or reporters.
+ */
+public class ReferenceDataCache {
+
+    private static final int MAX_CACHED_PROJECTS = 1_000;
+
+    private static final String PROJECTS = "projects";
+    private static final String REPORTERS = "reporters";
+    private static final String VERSIONS_PREFIX = "versions:";
+
+    private final Backend backend;
+    private final LruCache<String, Set<?>> cache = new LruCache<>(MAX_CACHED_PROJECTS + 2);
+
+    public ReferenceDataCache(Backend backend) {
+        this.backend = backend;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<Project> getProjects() {
+        return (Set<Project>) cache.get(PROJECTS, key -> unmodifiable(backend.withRepository(repo -> repo.findProjects())));
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<Reporter> getReporters() {
+        return (Set<Reporter>) cache.get(REPORTERS, key -> unmodifiable(backend.withRepository(repo -> repo.findReporters())));
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<ProjectVersion> getVersions(Project project) {
+        return (Set<ProjectVersion>) cache.get(VERSIONS_PREFIX + project.getId(),
+                key -> unmodifiable(backend.withRepository(repo -> repo.findProjectVersions(project))));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public LruCache<String, Set<?>> getCache() {
+        return cache;
+    }
+
+    private static <T> Set<T> unmodifiable(Set<T> items) {
+        // Keeps the order the repository returned the items in
+        return Collections.unmodifiableSet(new LinkedHashSet<>(items));
+    }
+}
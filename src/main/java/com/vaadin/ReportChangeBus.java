@@ -0,0 +1,114 @@
+package com.vaadin;
+
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Application wide bus that fans report and comment changes out to every subscribed UI.
+ * <p>
+ * Changes are collected per UI and delivered in one {@link UI#access(Runnable)} call
+ * once the coalescing window after the first pending change has passed, so a bulk edit
+ * of many reports results in a single refresh per UI.
+ */
+public class ReportChangeBus {
+
+    public static final String WINDOW_PROPERTY = "bugrap.changes.windowMillis";
+    static final long DEFAULT_WINDOW_MILLIS = 300;
+
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    public ReportChangeBus(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bugrap-report-changes");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribes the listener, which will be called with the UI's session locked.
+     */
+    public Registration subscribe(UI ui, Consumer<ReportChanges> listener) {
+        Subscription subscription = new Subscription(ui, listener);
+        subscriptions.add(subscription);
+        return () -> subscriptions.remove(subscription);
+    }
+
+    /**
+     * Queues the changes for every subscribed UI except the one they originate from,
+     * which has already updated itself.
+     *
+     * @param origin the UI that made the changes, or {@code null}
+     */
+    public void publish(ReportChanges changes, UI origin) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        for (Subscription subscription : subscriptions) {
+            if (subscription.ui != origin) {
+                subscription.enqueue(changes);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        subscriptions.clear();
+    }
+
+    private final class Subscription {
+        private final UI ui;
+        private final Consumer<ReportChanges> listener;
+
+        private Set<Long> pendingReportIds;
+        private Set<Long> pendingCommentedReportIds;
+
+        Subscription(UI ui, Consumer<ReportChanges> listener) {
+            this.ui = ui;
+            this.listener = listener;
+        }
+
+        synchronized void enqueue(ReportChanges changes) {
+            if (pendingReportIds == null) {
+                pendingReportIds = new HashSet<>();
+                pendingCommentedReportIds = new HashSet<>();
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+
+            pendingReportIds.addAll(changes.getReportIds());
+            pendingCommentedReportIds.addAll(changes.getCommentedReportIds());
+        }
+
+        private void flush() {
+            ReportChanges batch;
+            synchronized (this) {
+                batch = new ReportChanges(pendingReportIds, pendingCommentedReportIds);
+                pendingReportIds = null;
+                pendingCommentedReportIds = null;
+            }
+
+            try {
+                ui.access(() -> listener.accept(batch));
+            } catch (UIDetachedException e) {
+                subscriptions.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.vaadin;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Ids of reports that were saved and of reports that got new comments, as delivered
+ * by the {@link ReportChangeBus}.
+ */
+public class ReportChanges implements Serializable {
+
+    private final Set<Long> reportIds;
+    private final Set<Long> commentedReportIds;
+
+    public ReportChanges(Collection<Long> reportIds, Collection<Long> commentedReportIds) {
+        this.reportIds = Collections.unmodifiableSet(new HashSet<>(reportIds));
+        this.commentedReportIds = Collections.unmodifiableSet(new HashSet<>(commentedReportIds));
+    }
+
+    public static ReportChanges ofReports(Collection<Long> reportIds) {
+        return new ReportChanges(reportIds, Collections.emptySet());
+    }
+
+    public static ReportChanges ofComment(long reportId) {
+        return new ReportChanges(Collections.emptySet(), Collections.singleton(reportId));
+    }
+
+    public Set<Long> getReportIds() {
+        return reportIds;
+    }
+
+    public Set<Long> getCommentedReportIds() {
+        return commentedReportIds;
+    }
+
+    public boolean isEmpty() {
+        return reportIds.isEmpty() && commentedReportIds.isEmpty();
+    }
+
+    public boolean affects(long reportId) {
+        return reportIds.contains(reportId) || commentedReportIds.contains(reportId);
+    }
+}
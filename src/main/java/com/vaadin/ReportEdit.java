@@ -0,0 +1,120 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.ProjectVersion;
+import org.vaadin.bugrap.domain.entities.Report;
+import org.vaadin.bugrap.domain.entities.Reporter;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The fields a user changed on one or more reports in the report details, compared
+ * with the values shown to them. Only the changed fields are written, so changes other
+ * users made to the other fields meanwhile are kept.
+ */
+public class ReportEdit implements Serializable {
+
+    public enum Field {
+        PRIORITY("PRIORITY"),
+        TYPE("TYPE"),
+        STATUS("STATUS"),
+        ASSIGNED("ASSIGNED_ID"),
+        VERSION("VERSION_ID");
+
+        private final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return the value the report has for this field in the REPORT table
+         */
+        Object columnValue(Report report) {
+            return columnValue(report.getPriority(), report.getType(), report.getStatus(), report.getAssigned(),
+                    report.getVersion());
+        }
+
+        private Object columnValue(Report.Priority priority, Report.Type type, Report.Status status, Reporter assigned,
+                                   ProjectVersion version) {
+            switch (this) {
+                case PRIORITY:
+                    return priority != null ? priority.ordinal() : null;
+                case TYPE:
+                    return type != null ? type.ordinal() : null;
+                case STATUS:
+                    return status != null ? status.ordinal() : null;
+                case ASSIGNED:
+                    return assigned != null ? assigned.getId() : null;
+                default:
+                    return version != null ? version.getId() : null;
+            }
+        }
+    }
+
+    private final Set<Field> fields;
+    private final Report.Priority priority;
+    private final Report.Type type;
+    private final Report.Status status;
+    private final Reporter assigned;
+    private final ProjectVersion version;
+
+    /**
+     * @param shown the values shown to the user, {@code null} where the edited reports
+     *              differ
+     */
+    public ReportEdit(Report shown, Report.Priority priority, Report.Type type, Report.Status status, Reporter assigned,
+                      ProjectVersion version) {
+        this.priority = priority;
+        this.type = type;
+        this.status = status;
+        this.assigned = assigned;
+        this.version = version;
+
+        Set<Field> changed = EnumSet.noneOf(Field.class);
+        for (Field field : Field.values()) {
+            Object value = getColumnValue(field);
+            // Priority and type cannot be cleared
+            boolean required = field == Field.PRIORITY || field == Field.TYPE;
+            if (!(required && value == null) && !Objects.equals(field.columnValue(shown), value)) {
+                changed.add(field);
+            }
+        }
+        this.fields = Collections.unmodifiableSet(changed);
+    }
+
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * @return the new value of the field in the REPORT table
+     */
+    Object getColumnValue(Field field) {
+        return field.columnValue(priority, type, status, assigned, version);
+    }
+
+    public ReportState applyTo(ReportState state) {
+        return new ReportState(state.getId(),
+                state.getProjectId(),
+                fields.contains(Field.VERSION) ? (Long) getColumnValue(Field.VERSION) : state.getVersionId(),
+                fields.contains(Field.STATUS) ? status : state.getStatus(),
+                fields.contains(Field.ASSIGNED) ? (Long) getColumnValue(Field.ASSIGNED) : state.getAssignedId());
+    }
+
+    @Override
+    public String toString() {
+        return "ReportEdit" + fields;
+    }
+}
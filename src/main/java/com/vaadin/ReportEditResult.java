@@ -0,0 +1,41 @@
+package com.vaadin;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Which reports a {@link ReportEdit} was written to, and which were left alone because
+ * someone else had changed one of the edited fields to another value meanwhile.
+ */
+public class ReportEditResult implements Serializable {
+
+    private final List<ReportState> updated;
+    private final Set<Long> conflicting;
+
+    public ReportEditResult(List<ReportState> updated, Set<Long> conflicting) {
+        this.updated = Collections.unmodifiableList(updated);
+        this.conflicting = Collections.unmodifiableSet(conflicting);
+    }
+
+    /**
+     * @return the states the updated reports had right before the update
+     */
+    public List<ReportState> getUpdated() {
+        return updated;
+    }
+
+    public List<Long> getUpdatedIds() {
+        return updated.stream().map(ReportState::getId).collect(Collectors.toList());
+    }
+
+    public Set<Long> getConflictingIds() {
+        return conflicting;
+    }
+
+    public boolean hasConflicts() {
+        return !conflicting.isEmpty();
+    }
+}
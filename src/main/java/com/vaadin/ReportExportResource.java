@@ -0,0 +1,78 @@
+package com.vaadin;
+
+import com.vaadin.server.ConnectorResource;
+import com.vaadin.server.DownloadStream;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.function.Supplier;
+
+/**
+ * Export of the reports matching the filter of the report grid at the time of the
+ * download. The filter is read while the session is locked, the reports are written
+ * after the lock has been released.
+ */
+public class ReportExportResource implements ConnectorResource {
+
+    private final Backend backend;
+    private final Supplier<ReportFilter> filter;
+    private final ReportExporter.Format format;
+
+    public ReportExportResource(Backend backend, Supplier<ReportFilter> filter, ReportExporter.Format format) {
+        this.backend = backend;
+        this.filter = filter;
+        this.format = format;
+    }
+
+    @Override
+    public DownloadStream getStream() {
+        return new ExportDownloadStream(backend, filter.get(), format, getFilename());
+    }
+
+    @Override
+    public String getFilename() {
+        return "reports-" + new SimpleDateFormat("yyyyMMdd-HHmm").format(new Date()) + "." + format.getExtension();
+    }
+
+    @Override
+    public String getMIMEType() {
+        return format.getMimeType();
+    }
+
+    private static final class ExportDownloadStream extends DownloadStream {
+
+        private final Backend backend;
+        private final ReportFilter filter;
+        private final ReportExporter.Format format;
+
+        ExportDownloadStream(Backend backend, ReportFilter filter, ReportExporter.Format format, String fileName) {
+            super(null, format.getMimeType() + "; charset=UTF-8", fileName);
+            this.backend = backend;
+            this.filter = filter;
+            this.format = format;
+        }
+
+        @Override
+        public void writeResponse(VaadinRequest request, VaadinResponse response) throws IOException {
+            response.setContentType(getContentType());
+            response.setCacheTime(0);
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + getFileName() + "\"");
+
+            try {
+                backend.getMetrics().time("exportReports", () -> filter + ", format=" + format, () -> {
+                    try {
+                        return new ReportExporter(backend).export(filter, format, response.getOutputStream());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
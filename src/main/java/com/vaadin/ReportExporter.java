@@ -0,0 +1,185 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.ProjectVersion;
+import org.vaadin.bugrap.domain.entities.Reporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the reports matching a filter as CSV or JSON Lines. Reports are read in
+ * batches and written as they are read, so memory use does not depend on the number of
+ * reports exported.
+ */
+public class ReportExporter {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON_LINES("application/x-ndjson", "jsonl");
+
+        private final String mimeType;
+        private final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] COLUMNS = {"id", "project", "version", "type", "priority", "status", "summary",
+            "description", "author", "assigned", "reported", "timestamp", "comments"};
+
+    private final Backend backend;
+
+    public ReportExporter(Backend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * @return the number of reports written
+     */
+    public long export(ReportFilter filter, Format format, OutputStream out) throws IOException {
+        Map<Long, String> versions = new HashMap<>();
+        for (ProjectVersion version : backend.getReferenceData().getVersions(filter.getProject())) {
+            versions.put(version.getId(), version.getVersion());
+        }
+        Map<Long, String> reporters = new HashMap<>();
+        for (Reporter reporter : backend.getReferenceData().getReporters()) {
+            reporters.put(reporter.getId(), reporter.getName());
+        }
+
+        // Searches match at most a bounded number of reports
+        List<Long> reportIds = filter.hasSearchText()
+                ? backend.findReportIds(filter, ReportSort.BY_ID, 0, Integer.MAX_VALUE)
+                : null;
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == Format.CSV) {
+            writeCsvLine(writer, COLUMNS);
+        }
+
+        long[] rows = {0};
+        try {
+            backend.getReportQueries().scanReports(filter, reportIds, row -> {
+                Object[] values = {row.getId(), filter.getProject().getName(), versions.get(row.getVersionId()),
+                        row.getType(), row.getPriority(), row.getStatus(), row.getSummary(), row.getDescription(),
+                        reporters.get(row.getAuthorId()), reporters.get(row.getAssignedId()),
+                        row.getReported(), row.getTimestamp(), row.getCommentCount()};
+                try {
+                    if (format == Format.CSV) {
+                        writeCsvLine(writer, values);
+                    } else {
+                        writeJsonLine(writer, values);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writer.flush();
+        return rows[0];
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            String value = format(values[i]);
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeJsonLine(Writer writer, Object[] values) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeJsonString(writer, COLUMNS[i]);
+            writer.write(':');
+
+            Object value = values[i];
+            if (value == null) {
+                writer.write("null");
+            } else if (value instanceof Number) {
+                writer.write(value.toString());
+            } else {
+                writeJsonString(writer, format(value));
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Date) {
+            return DateTimeFormatter.ISO_INSTANT.format(((Date) value).toInstant());
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Project;
+import org.vaadin.bugrap.domain.entities.ProjectVersion;
+import org.vaadin.bugrap.domain.entities.Report;
+import org.vaadin.bugrap.domain.entities.Reporter;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Filter of the report grid. A {@code null} version means all versions of the project,
+ * no statuses means any status and a {@code null} assignee means everyone. Search text,
+ * if it has any tokens the {@link ReportSearchIndex} indexes, is matched against it.
+ */
+public class ReportFilter implements Serializable {
+
+    private final Project project;
+    private final ProjectVersion projectVersion;
+    private final Set<Report.Status> statuses;
+    private final Reporter assignee;
+    private final String searchText;
+
+    public ReportFilter(Project project, ProjectVersion projectVersion, Set<Report.Status> statuses, Reporter assignee) {
+        this(project, projectVersion, statuses, assignee, null);
+    }
+
+    public ReportFilter(Project project, ProjectVersion projectVersion, Set<Report.Status> statuses, Reporter assignee, String searchText) {
+        this.project = Objects.requireNonNull(project);
+        this.projectVersion = projectVersion;
+        this.statuses = statuses == null || statuses.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(statuses));
+        this.assignee = assignee;
+        // Text without indexable tokens, e.g. a single typed letter, does not filter
+        this.searchText = searchText == null || ReportSearchIndex.tokenize(searchText).isEmpty() ? null : searchText.trim();
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    public ProjectVersion getProjectVersion() {
+        return projectVersion;
+    }
+
+    public Set<Report.Status> getStatuses() {
+        return statuses;
+    }
+
+    public Reporter getAssignee() {
+        return assignee;
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public boolean hasSearchText() {
+        return searchText != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ReportFilter that = (ReportFilter) o;
+        return Objects.equals(project, that.project)
+                && Objects.equals(projectVersion, that.projectVersion)
+                && statuses.equals(that.statuses)
+                && Objects.equals(assignee, that.assignee)
+                && Objects.equals(searchText, that.searchText);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(project, projectVersion, statuses, assignee, searchText);
+    }
+
+    @Override
+    public String toString() {
+        return "ReportFilter{project=" + project.getId()
+                + ", version=" + (projectVersion != null ? projectVersion.getId() : "all")
+                + ", statuses=" + statuses
+                + ", assignee=" + (assignee != null ? assignee.getId() : "everyone")
+                + (searchText != null ? ", search='" + searchText + "'" : "")
+                + "}";
+    }
+}
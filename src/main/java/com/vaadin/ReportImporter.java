@@ -0,0 +1,511 @@
+package com.vaadin;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+import org.vaadin.bugrap.domain.entities.Comment;
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Imports reporters, projects, versions, reports and comments from a JSON Lines file
+ * with one record per line:
+ * <pre>
+ * {"kind":"reporter","id":"u1","name":"Jane Doe","email":"jane@example.com"}
+ * {"kind":"project","id":"p1","name":"Bugrap","manager":"u1"}
+ * {"kind":"version","id":"v1","project":"p1","version":"1.0","releaseDate":"2017-05-01T00:00:00Z"}
+ * {"kind":"report","id":"r1","project":"p1","version":"v1","type":"BUG","priority":"MAJOR","status":"OPEN",
+ *  "summary":"...","description":"...","author":"u1","assigned":"u1","reported":"2017-04-01T10:00:00Z"}
+ * {"kind":"comment","report":"r1","author":"u1","comment":"...","timestamp":"2017-04-02T08:30:00Z"}
+ * </pre>
+ * Records refer to each other by their ids in the source system, so a record has to
+ * come after the ones it refers to. Those ids are mapped to database ids in memory and
+ * in the IMPORTEDID table, so later files can refer to rows imported before. Reporters
+ * and projects with the name of an existing one, and versions with the name of an
+ * existing version of the same project, are mapped to the existing row.
+ * <p>
+ * Rows are inserted with JDBC batches and committed periodically together with the
+ * number of lines read, so running the same file again resumes after the last commit.
+ * Records that cannot be imported are logged and skipped.
+ */
+public class ReportImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_COMMIT_INTERVAL = 5_000;
+
+    private static final Logger LOGGER = Logger.getLogger(ReportImporter.class.getName());
+
+    /**
+     * Kinds of records, in the order their rows are inserted
+     */
+    private enum Kind {
+        REPORTER("INSERT INTO REPORTER (ID, ADMIN, CONSISTENCYVERSION, EMAIL, NAME, PASSWORD)"
+                + " VALUES (?, FALSE, 1, ?, ?, NULL)"),
+        PROJECT("INSERT INTO PROJECT (ID, CONSISTENCYVERSION, NAME, MANAGER_ID) VALUES (?, 1, ?, ?)"),
+        VERSION("INSERT INTO PROJECTVERSION (ID, CLOSED, CONSISTENCYVERSION, RELEASEDATE, VERSION, PROJECT_ID)"
+                + " VALUES (?, ?, 1, ?, ?, ?)"),
+        REPORT("INSERT INTO REPORT (ID, CONSISTENCYVERSION, DESCRIPTION, PRIORITY, REPORTED, STATUS, SUMMARY,"
+                + " TIMESTAMP, TYPE, ASSIGNED_ID, AUTHOR_ID, OCCURSIN_ID, PROJECT_ID, VERSION_ID, COMMENTCOUNT)"
+                + " VALUES (?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, ?, ?, 0)"),
+        COMMENT("INSERT INTO COMMENT (ID, CONSISTENCYVERSION, COMMENT, TIMESTAMP, TYPE, AUTHOR_ID, REPORT_ID)"
+                + " VALUES (?, 1, ?, ?, ?, ?, ?)");
+
+        private final String insert;
+
+        Kind(String insert) {
+            this.insert = insert;
+        }
+    }
+
+    private final Backend backend;
+    private final int batchSize;
+    private final int commitInterval;
+
+    private final Map<Kind, Map<String, Long>> importedIds = new EnumMap<>(Kind.class);
+    private final Map<String, Long> reporterNames = new HashMap<>();
+    private final Map<String, Long> projectNames = new HashMap<>();
+    private final Map<String, Long> versionNames = new HashMap<>();
+    private final Map<Long, Long> versionProjects = new HashMap<>();
+
+    private final Map<Kind, List<Object[]>> pendingRows = new EnumMap<>(Kind.class);
+    private final List<Object[]> pendingImportedIds = new ArrayList<>();
+    private final Map<Long, Integer> pendingCommentCounts = new HashMap<>();
+    private int pendingCount;
+
+    private final List<ReportRow> uncommittedReports = new ArrayList<>();
+    private final Map<Long, List<String>> uncommittedComments = new HashMap<>();
+    private boolean uncommittedReferenceData;
+
+    private long nextId;
+    private long lastAllocatedId = -1;
+
+    /**
+     * @param batchSize      the number of rows sent to the database at once
+     * @param commitInterval the number of rows after which the import is committed
+     */
+    public ReportImporter(Backend backend, int batchSize, int commitInterval) {
+        this.backend = backend;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+        for (Kind kind : Kind.values()) {
+            importedIds.put(kind, new HashMap<>());
+            pendingRows.put(kind, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Imports the file, or what is left of it after an earlier import of the same file.
+     *
+     * @param progress gets the number of rows imported after every commit
+     */
+    public ImportSummary importFile(Path file, BatchProgressListener progress) throws IOException {
+        String source = file.toAbsolutePath().normalize().toString();
+        long started = System.nanoTime();
+
+        try {
+            return backend.getConnectionPool().executeInTransaction(connection -> {
+                loadReferences(connection);
+                ImportSummary summary = loadCheckpoint(connection, source);
+
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    long lineNumber = 0;
+                    int sinceCommit = 0;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (++lineNumber <= summary.resumedAfterLine || line.trim().isEmpty()) {
+                            continue;
+                        }
+
+                        Kind kind;
+                        try {
+                            kind = addRecord(Json.parse(line));
+                        } catch (RuntimeException e) {
+                            LOGGER.warning("Skipped line " + lineNumber + " of " + file + ": " + e.getMessage());
+                            summary.rejected++;
+                            continue;
+                        }
+                        summary.imported.merge(kind, 1L, Long::sum);
+
+                        if (pendingCount >= batchSize) {
+                            flush(connection);
+                        }
+                        if (++sinceCommit >= commitInterval) {
+                            commit(connection, source, lineNumber, summary);
+                            progress.onProgress(summary.getImportedRows(), -1);
+                            sinceCommit = 0;
+                        }
+                    }
+                    commit(connection, source, lineNumber, summary);
+                    progress.onProgress(summary.getImportedRows(), -1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                summary.nanos = System.nanoTime() - started;
+                return summary;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void loadReferences(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT KIND, EXTERNALID, ID FROM IMPORTEDID")) {
+                while (resultSet.next()) {
+                    importedIds.get(Kind.valueOf(resultSet.getString(1))).put(resultSet.getString(2), resultSet.getLong(3));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT ID, NAME FROM REPORTER")) {
+                while (resultSet.next()) {
+                    reporterNames.putIfAbsent(resultSet.getString(2), resultSet.getLong(1));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT ID, NAME FROM PROJECT")) {
+                while (resultSet.next()) {
+                    projectNames.putIfAbsent(resultSet.getString(2), resultSet.getLong(1));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT ID, PROJECT_ID, VERSION FROM PROJECTVERSION")) {
+                while (resultSet.next()) {
+                    versionNames.putIfAbsent(resultSet.getLong(2) + "/" + resultSet.getString(3), resultSet.getLong(1));
+                    versionProjects.put(resultSet.getLong(1), resultSet.getLong(2));
+                }
+            }
+        }
+    }
+
+    private static ImportSummary loadCheckpoint(Connection connection, String source) throws SQLException {
+        ImportSummary summary = new ImportSummary();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT LINENUMBER, REJECTED FROM IMPORTCHECKPOINT WHERE SOURCE = ?")) {
+            select.setString(1, source);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (resultSet.next()) {
+                    summary.resumedAfterLine = resultSet.getLong(1);
+                    summary.rejected = resultSet.getLong(2);
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Maps the record to database ids and queues its row.
+     *
+     * @return the kind of the record
+     */
+    private Kind addRecord(JsonObject record) {
+        Kind kind = Kind.valueOf(requireText(record, "kind").toUpperCase(Locale.ROOT));
+        String externalId = kind == Kind.COMMENT ? null : requireText(record, "id");
+        if (externalId != null && importedIds.get(kind).containsKey(externalId)) {
+            throw new IllegalArgumentException(kind + " " + externalId + " has already been imported");
+        }
+
+        switch (kind) {
+            case REPORTER: {
+                String name = requireText(record, "name");
+                Long existing = reporterNames.get(name);
+                long id = existing != null ? existing : newRow(kind, text(record, "email"), name);
+                reporterNames.putIfAbsent(name, id);
+                mapId(kind, externalId, id);
+                uncommittedReferenceData = true;
+                break;
+            }
+            case PROJECT: {
+                String name = requireText(record, "name");
+                Long existing = projectNames.get(name);
+                long id = existing != null ? existing : newRow(kind, name, reference(record, "manager", Kind.REPORTER));
+                projectNames.putIfAbsent(name, id);
+                mapId(kind, externalId, id);
+                uncommittedReferenceData = true;
+                break;
+            }
+            case VERSION: {
+                long projectId = requireReference(record, "project", Kind.PROJECT);
+                String name = requireText(record, "version");
+                Long existing = versionNames.get(projectId + "/" + name);
+                long id = existing != null ? existing : newRow(kind, record.hasKey("closed") && record.getBoolean("closed"),
+                        timestamp(record, "releaseDate", null), name, projectId);
+                versionNames.putIfAbsent(projectId + "/" + name, id);
+                versionProjects.put(id, projectId);
+                mapId(kind, externalId, id);
+                uncommittedReferenceData = true;
+                break;
+            }
+            case REPORT: {
+                long projectId = requireReference(record, "project", Kind.PROJECT);
+                Long versionId = reference(record, "version", Kind.VERSION);
+                if (versionId != null && versionProjects.get(versionId) != projectId) {
+                    throw new IllegalArgumentException("Version " + text(record, "version") + " is not a version of project "
+                            + text(record, "project"));
+                }
+                Report.Type type = enumValue(record, "type", Report.Type.class, Report.Type.BUG);
+                Report.Priority priority = enumValue(record, "priority", Report.Priority.class, Report.Priority.NORMAL);
+                Report.Status status = enumValue(record, "status", Report.Status.class, null);
+                Timestamp reported = timestamp(record, "reported", new Timestamp(System.currentTimeMillis()));
+                Timestamp modified = timestamp(record, "timestamp", reported);
+                Long authorId = reference(record, "author", Kind.REPORTER);
+                Long assignedId = reference(record, "assigned", Kind.REPORTER);
+                String summary = text(record, "summary");
+                String description = text(record, "description");
+
+                long id = newRow(kind, description, priority.ordinal(), reported, status != null ? status.ordinal() : null,
+                        summary, modified, type.ordinal(), assignedId, authorId, projectId, versionId);
+                mapId(kind, externalId, id);
+                uncommittedReports.add(new ReportRow(id, projectId, versionId, type, priority, status, summary,
+                        description, authorId, assignedId, reported, modified, 0));
+                break;
+            }
+            case COMMENT: {
+                long reportId = requireReference(record, "report", Kind.REPORT);
+                String comment = text(record, "comment");
+                newRow(kind, comment, timestamp(record, "timestamp", new Timestamp(System.currentTimeMillis())),
+                        Comment.Type.COMMENT.ordinal(), reference(record, "author", Kind.REPORTER), reportId);
+                pendingCommentCounts.merge(reportId, 1, Integer::sum);
+                if (comment != null) {
+                    uncommittedComments.computeIfAbsent(reportId, id -> new ArrayList<>()).add(comment);
+                }
+                break;
+            }
+        }
+        return kind;
+    }
+
+    /**
+     * Queues a row with a new id followed by the given values.
+     */
+    private long newRow(Kind kind, Object... values) {
+        long id = allocateId();
+        Object[] row = new Object[values.length + 1];
+        row[0] = id;
+        System.arraycopy(values, 0, row, 1, values.length);
+        pendingRows.get(kind).add(row);
+        pendingCount++;
+        return id;
+    }
+
+    private void mapId(Kind kind, String externalId, long id) {
+        importedIds.get(kind).put(externalId, id);
+        pendingImportedIds.add(new Object[]{kind.name(), externalId, id});
+    }
+
+    /**
+     * Ids are taken from the sequence the repository uses in blocks, each in its own
+     * short transaction so the sequence is not locked for the whole import. Ids of a
+     * failed import are left unused.
+     */
+    private long allocateId() {
+        if (nextId > lastAllocatedId) {
+            int count = Math.max(batchSize, 1);
+            lastAllocatedId = backend.getConnectionPool().executeInTransaction(connection -> {
+                try (PreparedStatement update = connection.prepareStatement(
+                        "UPDATE SEQUENCE SET SEQ_COUNT = SEQ_COUNT + ? WHERE SEQ_NAME = 'SEQ_GEN'")) {
+                    update.setLong(1, count);
+                    update.executeUpdate();
+                }
+                try (Statement select = connection.createStatement();
+                     ResultSet resultSet = select.executeQuery("SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = 'SEQ_GEN'")) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            });
+            nextId = lastAllocatedId - count + 1;
+        }
+        return nextId++;
+    }
+
+    /**
+     * Sends the queued rows to the database, parents first.
+     */
+    private void flush(Connection connection) throws SQLException {
+        for (Kind kind : Kind.values()) {
+            executeBatch(connection, kind.insert, pendingRows.get(kind));
+        }
+        executeBatch(connection, "INSERT INTO IMPORTEDID (KIND, EXTERNALID, ID) VALUES (?, ?, ?)", pendingImportedIds);
+
+        List<Object[]> counts = new ArrayList<>();
+        pendingCommentCounts.forEach((reportId, count) -> counts.add(new Object[]{count, reportId}));
+        executeBatch(connection, "UPDATE REPORT SET COMMENTCOUNT = COMMENTCOUNT + ? WHERE ID = ?", counts);
+        pendingCommentCounts.clear();
+        pendingCount = 0;
+    }
+
+    private static void executeBatch(Connection connection, String sql, List<Object[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (row[i] == null) {
+                        statement.setNull(i + 1, Types.NULL);
+                    } else {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        rows.clear();
+    }
+
+    /**
+     * Commits the rows and the number of lines read so far, then brings the caches and
+     * the search index up to date.
+     */
+    private void commit(Connection connection, String source, long lineNumber, ImportSummary summary) throws SQLException {
+        flush(connection);
+
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE IMPORTCHECKPOINT SET LINENUMBER = ?, IMPORTED = IMPORTED + ?, REJECTED = ? WHERE SOURCE = ?")) {
+            update.setLong(1, lineNumber);
+            update.setLong(2, summary.getImportedRows() - summary.checkpointedRows);
+            update.setLong(3, summary.rejected);
+            update.setString(4, source);
+            if (update.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO IMPORTCHECKPOINT (SOURCE, LINENUMBER, IMPORTED, REJECTED) VALUES (?, ?, ?, ?)")) {
+                    insert.setString(1, source);
+                    insert.setLong(2, lineNumber);
+                    insert.setLong(3, summary.getImportedRows());
+                    insert.setLong(4, summary.rejected);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        connection.commit();
+        summary.checkpointedRows = summary.getImportedRows();
+
+        backend.rowsImported(new ArrayList<>(uncommittedReports), new HashMap<>(uncommittedComments), uncommittedReferenceData);
+        uncommittedReports.clear();
+        uncommittedComments.clear();
+        uncommittedReferenceData = false;
+    }
+
+    private static String text(JsonObject record, String key) {
+        if (!record.hasKey(key)) {
+            return null;
+        }
+
+        JsonValue value = record.get(key);
+        if (value.getType() == JsonType.NULL) {
+            return null;
+        }
+        if (value.getType() == JsonType.NUMBER && value.asNumber() == Math.rint(value.asNumber())) {
+            return String.valueOf((long) value.asNumber());
+        }
+        return value.asString();
+    }
+
+    private static String requireText(JsonObject record, String key) {
+        String text = text(record, key);
+        if (text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("Missing \"" + key + "\"");
+        }
+        return text;
+    }
+
+    private Long reference(JsonObject record, String key, Kind kind) {
+        String externalId = text(record, key);
+        if (externalId == null) {
+            return null;
+        }
+
+        Long id = importedIds.get(kind).get(externalId);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown " + kind.name().toLowerCase(Locale.ROOT) + " " + externalId);
+        }
+        return id;
+    }
+
+    private long requireReference(JsonObject record, String key, Kind kind) {
+        requireText(record, key);
+        return reference(record, key, kind);
+    }
+
+    private static <E extends Enum<E>> E enumValue(JsonObject record, String key, Class<E> type, E defaultValue) {
+        String text = text(record, key);
+        return text != null ? Enum.valueOf(type, text.toUpperCase(Locale.ROOT)) : defaultValue;
+    }
+
+    private static Timestamp timestamp(JsonObject record, String key, Timestamp defaultValue) {
+        String text = text(record, key);
+        return text != null ? Timestamp.from(Instant.parse(text)) : defaultValue;
+    }
+
+    /**
+     * What an import did, including the lines read by earlier runs on the same file.
+     */
+    public static final class ImportSummary {
+        private final Map<Kind, Long> imported = new EnumMap<>(Kind.class);
+        private long rejected;
+        private long resumedAfterLine;
+        private long checkpointedRows;
+        private long nanos;
+
+        /**
+         * @return the rows inserted or mapped by this run
+         */
+        public long getImportedRows() {
+            return imported.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public long getImportedReports() {
+            return imported.getOrDefault(Kind.REPORT, 0L);
+        }
+
+        public long getImportedComments() {
+            return imported.getOrDefault(Kind.COMMENT, 0L);
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return the number of lines imported by earlier runs and skipped by this one
+         */
+        public long getResumedAfterLine() {
+            return resumedAfterLine;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos > 0 ? getImportedRows() / (nanos / 1e9) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d reporters, %d projects, %d versions, %d reports and %d comments"
+                            + " in %.1f s (%.0f rows/s), %d lines rejected%s",
+                    imported.getOrDefault(Kind.REPORTER, 0L), imported.getOrDefault(Kind.PROJECT, 0L),
+                    imported.getOrDefault(Kind.VERSION, 0L), getImportedReports(), getImportedComments(),
+                    nanos / 1e9, getRowsPerSecond(), rejected,
+                    resumedAfterLine > 0 ? ", resumed after line " + resumedAfterLine : "");
+        }
+    }
+}
@@ -8,15 +8,18 @@ import com.vaadin.ui.themes.ValoTheme;
 import org.vaadin.bugrap.domain.entities.Comment;
 import org.vaadin.bugrap.domain.entities.Report;
 
-import java.io.*;
-import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Created by diegocardoso on 4/10/17.
  */
-public class ReportPage extends VerticalLayout implements View, ReportUpdateListener, Upload.Receiver, Upload.SucceededListener, Upload.ProgressListener {
+public class ReportPage extends VerticalLayout implements View, ReportUpdateListener, ChunkedUploader.Listener {
+
+    /**
+     * Minimum time between two progress updates of an upload
+     */
+    private static final int PROGRESS_INTERVAL_MILLIS = 250;
 
     private MyUI myUI;
 
@@ -27,12 +30,14 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
     private final ReportsDetail reportsDetail;
     private TextArea commentTextArea;
 
-    private Upload attachmentBtn;
+    private Button attachmentBtn;
+    private ChunkedUploader attachmentUploader;
     private ProgressBar progressBar;
 
     private HorizontalLayout attachmentSection;
 
-    private File fileUploaded;
+    private AttachmentStore.StoredBlob attachmentUploaded;
+    private String attachmentName;
 
     public ReportPage (MyUI myUI) {
 
@@ -75,17 +80,10 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
         Button saveBtn = new Button("Done");
         saveBtn.addClickListener(e -> saveNewComment());
 
-        attachmentBtn = new Upload("Attachment...", this);
-        attachmentBtn.setImmediateMode(true);
-        attachmentBtn.addSucceededListener(this);
-
-        attachmentBtn.addProgressListener(this);
-
-        attachmentBtn.addStartedListener(e -> {
-            addAttachmentBeingUploaded(e.getFilename());
-        });
-
-        attachmentBtn.setButtonCaption("Upload");
+        // Attachments are sent in chunks, so an interrupted upload continues where it stopped
+        attachmentBtn = new Button("Upload");
+        attachmentUploader = new ChunkedUploader(myUI.getChunkedUploadUrl(), PROGRESS_INTERVAL_MILLIS, this);
+        attachmentUploader.extend(attachmentBtn);
 
         Button cancelBtn = new Button("Cancel");
         cancelBtn.addClickListener(e -> cancelNewComment());
@@ -125,10 +123,9 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
     }
 
     private void stopUpload() {
-        myUI.access(() -> {
-        attachmentBtn.interruptUpload();
+        attachmentUploader.cancel();
         attachmentSection.removeAllComponents();
-        attachmentBtn.setEnabled(true);   });
+        attachmentBtn.setEnabled(true);
     }
 
     private void addAttachmentUploaded(String filename) {
@@ -151,7 +148,8 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
 
     private void removeAttachmentUploaded() {
         attachmentSection.removeAllComponents();
-        fileUploaded = null;
+        attachmentUploaded = null;
+        attachmentName = null;
         attachmentBtn.setEnabled(true);
     }
 
@@ -164,21 +162,13 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
 
         commentTextArea.clear();
 
-        if (fileUploaded != null) {
-            try {
-                byte[] bytesFromAttachment = Files.readAllBytes(fileUploaded.toPath());
-                String attachmentName = fileUploaded.getName();
-
-                newComment.setAttachment(bytesFromAttachment);
-                newComment.setAttachmentName(attachmentName);
-
-                fileUploaded = null;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        AttachmentStore.StoredBlob attachment = attachmentUploaded;
+        if (attachment != null) {
+            newComment.setAttachmentName(attachmentName);
+            removeAttachmentUploaded();
         }
 
-        myUI.saveComment(newComment);
+        myUI.saveComment(newComment, attachment);
 
         setReport();
     }
@@ -220,33 +210,33 @@ public class ReportPage extends VerticalLayout implements View, ReportUpdateList
     }
 
     @Override
-    public OutputStream receiveUpload(String filename, String mimeType) {
-        FileOutputStream fos;
-
-        fileUploaded = new File("/var/tmp/bugrap/uploads/" + filename);
-        try {
-            fos = new FileOutputStream(fileUploaded);
-        } catch (Exception e) {
-            Notification.show("Error while uploading file", e.getMessage(), Notification.Type.ERROR_MESSAGE);
-            removeAttachmentUploaded();
-            return null;
-        }
-
-        return fos;
+    public void uploadStarted(String fileName) {
+        addAttachmentBeingUploaded(fileName);
     }
 
     @Override
-    public void uploadSucceeded(Upload.SucceededEvent succeededEvent) {
-        addAttachmentUploaded(succeededEvent.getFilename());
+    public void uploadProgress(long received, long total) {
+        if (progressBar != null && total > 0) {
+            progressBar.setValue((float) received / total);
+        }
     }
 
-
     @Override
-    public void updateProgress(long readBytes, long contentLength) {
-        float progressRate = Math.round((float)readBytes / (float) contentLength * 100.0f) / 100.0f;
+    public void uploadFinished(String token) {
+        ChunkedUploadHandler.ChunkedUpload upload = myUI.takeChunkedUpload(token);
+        if (upload == null) {
+            uploadFailed("The upload is not complete");
+            return;
+        }
+
+        attachmentUploaded = upload.getBlob();
+        attachmentName = upload.getFileName();
+        addAttachmentUploaded(attachmentName);
+    }
 
-        myUI.access(() -> {
-            progressBar.setValue(progressRate);
-        });
+    @Override
+    public void uploadFailed(String message) {
+        Notification.show("Error while uploading file", message, Notification.Type.ERROR_MESSAGE);
+        removeAttachmentUploaded();
     }
 }
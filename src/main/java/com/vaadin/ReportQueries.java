@@ -0,0 +1,494 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Report queries the repository does not offer, run directly against the REPORT table.
+ */
+public class ReportQueries {
+
+    private static final int SCAN_BATCH_SIZE = 1_000;
+    private static final int ID_CHUNK_SIZE = 500;
+    private static final String STATE_COLUMNS = "ID, PROJECT_ID, VERSION_ID, STATUS, ASSIGNED_ID";
+    static final int MAX_EDIT_ATTEMPTS = 3;
+
+    @FunctionalInterface
+    public interface ReportTextConsumer {
+        void accept(long reportId, String summary, String description);
+    }
+
+    @FunctionalInterface
+    public interface CommentTextConsumer {
+        void accept(long reportId, String comment);
+    }
+
+    private final ConnectionPool connectionPool;
+
+    public ReportQueries(ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Returns the ids of one page of reports matching the filter.
+     */
+    public List<Long> findReportIds(ReportFilter filter, ReportSort sort, int offset, int limit) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT ID FROM REPORT" + where(filter, params) + sort.toSql() + " LIMIT ? OFFSET ?";
+        params.add(limit);
+        params.add(offset);
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, params);
+
+                List<Long> ids = new ArrayList<>(limit);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    public int countReports(ReportFilter filter) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM REPORT" + where(filter, params);
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, params);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getInt(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts the reports of a project, or of one of its versions, per status and
+     * assignment in a single grouped query.
+     *
+     * @param versionId the version, or {@code null} for the whole project
+     */
+    public ReportStatistics findStatistics(long projectId, Long versionId) {
+        String sql = "SELECT STATUS, COUNT(*), COUNT(ASSIGNED_ID) FROM REPORT WHERE PROJECT_ID = ?"
+                + (versionId != null ? " AND VERSION_ID = ?" : "")
+                + " GROUP BY STATUS";
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, projectId);
+                if (versionId != null) {
+                    statement.setLong(2, versionId);
+                }
+
+                Map<Report.Status, Long> totalByStatus = new HashMap<>();
+                Map<Report.Status, Long> assignedByStatus = new HashMap<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Report.Status status = toStatus(resultSet, 1);
+                        totalByStatus.put(status, resultSet.getLong(2));
+                        assignedByStatus.put(status, resultSet.getLong(3));
+                    }
+                }
+                return new ReportStatistics(totalByStatus, assignedByStatus);
+            }
+        });
+    }
+
+    /**
+     * Reads the persisted state of a report, or {@code null} if it has not been saved yet.
+     */
+    public ReportState findReportState(long reportId) {
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + STATE_COLUMNS + " FROM REPORT WHERE ID = ?")) {
+                statement.setLong(1, reportId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? toState(resultSet) : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the changed fields of the edit to the reports with optimistic concurrency
+     * control, so nothing is locked while the user edits.
+     * <p>
+     * The current values of the reports are read together with their consistency
+     * version, and each report is then updated only if its version is still the same.
+     * A report whose edited fields another user has meanwhile changed to a different
+     * value is a conflict and is not updated. Changes to the other fields are kept.
+     * Reports changed again between the read and the update are read and merged again,
+     * up to {@value #MAX_EDIT_ATTEMPTS} times before they count as conflicts.
+     * <p>
+     * All chunks and attempts run in one transaction, so an SQL failure rolls back the
+     * whole edit and no report is left half updated.
+     *
+     * @param reports the reports with the values the edit started from
+     */
+    public ReportEditResult update(Collection<Report> reports, ReportEdit edit, BatchProgressListener progress) {
+        List<Object> setParams = new ArrayList<>();
+        StringJoiner sets = new StringJoiner(", ", "UPDATE REPORT SET ",
+                ", TIMESTAMP = ?, CONSISTENCYVERSION = COALESCE(CONSISTENCYVERSION, 0) + 1"
+                        + " WHERE ID = ? AND COALESCE(CONSISTENCYVERSION, 0) = ?");
+        for (ReportEdit.Field field : edit.getFields()) {
+            sets.add(field.getColumn() + " = ?");
+            setParams.add(edit.getColumnValue(field));
+        }
+        setParams.add(new Timestamp(System.currentTimeMillis()));
+        String updateSql = sets.toString();
+
+        List<Report> reportList = new ArrayList<>(reports);
+
+        return connectionPool.executeInTransaction(connection -> {
+            List<ReportState> updated = new ArrayList<>(reportList.size());
+            Set<Long> conflicting = new HashSet<>();
+
+            for (int from = 0; from < reportList.size(); from += ID_CHUNK_SIZE) {
+                Map<Long, Report> pending = new HashMap<>();
+                for (Report report : reportList.subList(from, Math.min(from + ID_CHUNK_SIZE, reportList.size()))) {
+                    pending.put(report.getId(), report);
+                }
+
+                for (int attempt = 0; attempt < MAX_EDIT_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                    List<Object[]> current = new ArrayList<>();
+                    try (PreparedStatement select = connection.prepareStatement("SELECT " + STATE_COLUMNS + ", "
+                            + "PRIORITY, TYPE, COALESCE(CONSISTENCYVERSION, 0) FROM REPORT WHERE ID IN "
+                            + placeholders(pending.size()))) {
+                        bind(select, new ArrayList<>(pending.keySet()));
+                        try (ResultSet resultSet = select.executeQuery()) {
+                            while (resultSet.next()) {
+                                ReportState state = toState(resultSet);
+                                Report base = pending.get(state.getId());
+                                if (overlaps(resultSet, base, edit)) {
+                                    conflicting.add(state.getId());
+                                    pending.remove(state.getId());
+                                } else {
+                                    current.add(new Object[]{state, resultSet.getInt(8)});
+                                }
+                            }
+                        }
+                    }
+                    // Reports deleted meanwhile are not updated
+                    pending.keySet().retainAll(current.stream()
+                            .map(row -> ((ReportState) row[0]).getId())
+                            .collect(Collectors.toSet()));
+
+                    try (PreparedStatement update = connection.prepareStatement(updateSql)) {
+                        for (Object[] row : current) {
+                            List<Object> params = new ArrayList<>(setParams);
+                            params.add(((ReportState) row[0]).getId());
+                            params.add(row[1]);
+                            bind(update, params);
+                            update.addBatch();
+                        }
+                        int[] counts = current.isEmpty() ? new int[0] : update.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] > 0) {
+                                ReportState state = (ReportState) current.get(i)[0];
+                                updated.add(state);
+                                pending.remove(state.getId());
+                            }
+                        }
+                    }
+                }
+                conflicting.addAll(pending.keySet());
+
+                progress.onProgress(Math.min(from + ID_CHUNK_SIZE, reportList.size()), reportList.size());
+            }
+            return new ReportEditResult(updated, conflicting);
+        });
+    }
+
+    /**
+     * Whether the row has a value for an edited field that is neither the value the
+     * edit started from nor the value it sets.
+     */
+    private static boolean overlaps(ResultSet resultSet, Report base, ReportEdit edit) throws SQLException {
+        for (ReportEdit.Field field : edit.getFields()) {
+            Object current = resultSet.getObject(field.getColumn());
+            if (!Objects.equals(current, field.columnValue(base)) && !Objects.equals(current, edit.getColumnValue(field))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ReportState toState(ResultSet resultSet) throws SQLException {
+        return new ReportState(resultSet.getLong(1),
+                resultSet.getLong(2),
+                toLong(resultSet, 3),
+                toStatus(resultSet, 4),
+                toLong(resultSet, 5));
+    }
+
+    static String placeholders(int count) {
+        StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < count; i++) {
+            placeholders.add("?");
+        }
+        return placeholders.toString();
+    }
+
+    /**
+     * Returns the ids of the given reports that also match the filter.
+     */
+    public Set<Long> filterReportIds(ReportFilter filter, Collection<Long> reportIds) {
+        if (reportIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        List<Object> params = new ArrayList<>();
+        StringJoiner placeholders = new StringJoiner(", ", " AND ID IN (", ")");
+        String where = where(filter, params);
+        for (Long reportId : reportIds) {
+            placeholders.add("?");
+            params.add(reportId);
+        }
+        String sql = "SELECT ID FROM REPORT" + where + placeholders;
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, params);
+
+                Set<Long> ids = new HashSet<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Returns the given report ids in the order of the sort.
+     */
+    public List<Long> sortReportIds(Collection<Long> reportIds, ReportSort sort) {
+        if (reportIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String sql = "SELECT ID FROM REPORT WHERE ID IN " + placeholders(reportIds.size()) + sort.toSql();
+
+        return connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, new ArrayList<>(reportIds));
+
+                List<Long> ids = new ArrayList<>(reportIds.size());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Reads the denormalized comment counts of the given reports.
+     */
+    public Map<Long, Integer> findCommentCounts(Collection<Long> reportIds) {
+        if (reportIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<Long> ids = new ArrayList<>(reportIds);
+        return connectionPool.execute(connection -> {
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT ID, COMMENTCOUNT FROM REPORT WHERE ID IN " + placeholders(chunk.size()))) {
+                    bind(statement, chunk);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            counts.put(resultSet.getLong(1), resultSet.getInt(2));
+                        }
+                    }
+                }
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * Recounts the comments of a report into its denormalized counter.
+     */
+    public void updateCommentCount(long reportId) {
+        connectionPool.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE REPORT SET COMMENTCOUNT = (SELECT COUNT(*) FROM COMMENT WHERE REPORT_ID = ?) WHERE ID = ?")) {
+                statement.setLong(1, reportId);
+                statement.setLong(2, reportId);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Walks the summaries and descriptions of all reports in batches, in id order.
+     */
+    public void scanReportTexts(ReportTextConsumer consumer) {
+        scan("SELECT ID, SUMMARY, DESCRIPTION FROM REPORT WHERE ID > ? ORDER BY ID LIMIT ?", Collections.emptyList(), 1,
+                resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+    }
+
+    /**
+     * Walks the texts of all comments in batches, in comment id order.
+     */
+    public void scanCommentTexts(CommentTextConsumer consumer) {
+        scan("SELECT REPORT_ID, COMMENT, ID FROM COMMENT WHERE ID > ? AND REPORT_ID IS NOT NULL ORDER BY ID LIMIT ?",
+                Collections.emptyList(), 3, resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getString(2)));
+    }
+
+    /**
+     * Walks the reports matching the filter in batches, in id order. The search text
+     * of the filter is ignored.
+     *
+     * @param reportIds only these reports, or {@code null} for all of them
+     */
+    public void scanReports(ReportFilter filter, Collection<Long> reportIds, Consumer<ReportRow> consumer) {
+        if (reportIds != null && reportIds.isEmpty()) {
+            return;
+        }
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ID, PROJECT_ID, VERSION_ID, TYPE, PRIORITY, STATUS, SUMMARY, "
+                + "DESCRIPTION, AUTHOR_ID, ASSIGNED_ID, REPORTED, TIMESTAMP, COMMENTCOUNT FROM REPORT");
+        sql.append(where(filter, params));
+        if (reportIds != null) {
+            sql.append(" AND ID IN ").append(placeholders(reportIds.size()));
+            params.addAll(reportIds);
+        }
+        sql.append(" AND ID > ? ORDER BY ID LIMIT ?");
+
+        scan(sql.toString(), params, 1, resultSet -> consumer.accept(new ReportRow(
+                resultSet.getLong(1),
+                resultSet.getLong(2),
+                toLong(resultSet, 3),
+                toEnum(resultSet, 4, Report.Type.values()),
+                toEnum(resultSet, 5, Report.Priority.values()),
+                toStatus(resultSet, 6),
+                resultSet.getString(7),
+                resultSet.getString(8),
+                toLong(resultSet, 9),
+                toLong(resultSet, 10),
+                resultSet.getTimestamp(11),
+                resultSet.getTimestamp(12),
+                resultSet.getInt(13))));
+    }
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Runs a keyset paged query whose last parameters are the last seen id and the
+     * batch size, so each batch only holds a connection briefly.
+     *
+     * @param params the parameters before those two
+     */
+    private void scan(String sql, List<?> params, int idColumn, RowConsumer consumer) {
+        long lastId = Long.MIN_VALUE;
+        int rows;
+        do {
+            long afterId = lastId;
+            long[] batchLastId = {lastId};
+            rows = connectionPool.execute(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    bind(statement, params);
+                    statement.setLong(params.size() + 1, afterId);
+                    statement.setInt(params.size() + 2, SCAN_BATCH_SIZE);
+                    statement.setFetchSize(SCAN_BATCH_SIZE);
+
+                    int count = 0;
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            consumer.accept(resultSet);
+                            batchLastId[0] = resultSet.getLong(idColumn);
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            });
+            lastId = batchLastId[0];
+        } while (rows == SCAN_BATCH_SIZE);
+    }
+
+    static Report.Status toStatus(ResultSet resultSet, int column) throws SQLException {
+        int ordinal = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : Report.Status.values()[ordinal];
+    }
+
+    static <E extends Enum<E>> E toEnum(ResultSet resultSet, int column, E[] values) throws SQLException {
+        int ordinal = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : values[ordinal];
+    }
+
+    static Long toLong(ResultSet resultSet, int column) throws SQLException {
+        long value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    static String where(ReportFilter filter, List<Object> params) {
+        StringBuilder where = new StringBuilder(" WHERE PROJECT_ID = ?");
+        params.add(filter.getProject().getId());
+
+        if (filter.getProjectVersion() != null) {
+            where.append(" AND VERSION_ID = ?");
+            params.add(filter.getProjectVersion().getId());
+        }
+
+        if (!filter.getStatuses().isEmpty()) {
+            StringJoiner placeholders = new StringJoiner(", ", " AND STATUS IN (", ")");
+            for (Report.Status status : filter.getStatuses()) {
+                placeholders.add("?");
+                params.add(status.ordinal());
+            }
+            where.append(placeholders);
+        }
+
+        if (filter.getAssignee() != null) {
+            where.append(" AND ASSIGNED_ID = ?");
+            params.add(filter.getAssignee().getId());
+        }
+
+        return where.toString();
+    }
+
+    static void bind(PreparedStatement statement, List<?> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.get(i));
+        }
+    }
+}
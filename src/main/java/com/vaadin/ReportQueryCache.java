@@ -0,0 +1,162 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Caches the ids of the reports matching a filter without search text in the order of
+ * a sort, shared by all sessions. Filters are keyed by the ids of their project,
+ * version and assignee and by their statuses, so equal filters built from different
+ * entity instances share an entry.
+ * <p>
+ * Results of more than {@value #MAX_CACHED_IDS} reports only cache their count, and
+ * their pages are still read from the database. An entry is dropped only when a saved
+ * report matched its filter before or after the save. Entries ordered by id are kept
+ * if the save changed none of the filtered fields.
+ */
+public class ReportQueryCache {
+
+    static final int MAX_CACHED_IDS = 10_000;
+    private static final int MAX_ENTRIES = 256;
+
+    private final ReportQueries reportQueries;
+    private final LruCache<Key, Result> cache = new LruCache<>(MAX_ENTRIES);
+
+    public ReportQueryCache(ReportQueries reportQueries) {
+        this.reportQueries = reportQueries;
+    }
+
+    /**
+     * Returns the ids of one page of reports matching the filter.
+     */
+    public List<Long> findReportIds(ReportFilter filter, ReportSort sort, int offset, int limit) {
+        Result result = get(filter, sort);
+        if (result.ids == null) {
+            return reportQueries.findReportIds(filter, sort, offset, limit);
+        }
+
+        int from = Math.min(offset, result.ids.length);
+        int to = (int) Math.min((long) from + limit, result.ids.length);
+        Long[] page = new Long[to - from];
+        for (int i = from; i < to; i++) {
+            page[i - from] = result.ids[i];
+        }
+        return Arrays.asList(page);
+    }
+
+    /**
+     * @return all ids matching the filter ordered by id, or {@code null} if there are
+     * too many to be cached
+     */
+    public List<Long> findAllReportIds(ReportFilter filter) {
+        Result result = get(filter, ReportSort.BY_ID);
+        return result.ids != null ? findReportIds(filter, ReportSort.BY_ID, 0, result.ids.length) : null;
+    }
+
+    public int countReports(ReportFilter filter) {
+        return get(filter, ReportSort.BY_ID).count;
+    }
+
+    /**
+     * @param before the state before the save, or {@code null} for a new report
+     * @param after  the state after the save
+     */
+    public void reportSaved(ReportState before, ReportState after) {
+        boolean sameFilterFields = before != null && before.sameFilterFieldsAs(after);
+        cache.invalidateIf(key -> (!sameFilterFields || !key.sort.isById())
+                && (key.matches(before) || key.matches(after)));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public LruCache<?, ?> getCache() {
+        return cache;
+    }
+
+    private Result get(ReportFilter filter, ReportSort sort) {
+        if (filter.hasSearchText()) {
+            throw new IllegalArgumentException("Searches are not cached: " + filter);
+        }
+
+        return cache.get(Key.of(filter, sort), key -> {
+            List<Long> ids = reportQueries.findReportIds(filter, sort, 0, MAX_CACHED_IDS + 1);
+            if (ids.size() > MAX_CACHED_IDS) {
+                return new Result(null, reportQueries.countReports(filter));
+            }
+            return new Result(ids.stream().mapToLong(Long::longValue).toArray(), ids.size());
+        });
+    }
+
+    private static final class Result {
+        private final long[] ids;
+        private final int count;
+
+        Result(long[] ids, int count) {
+            this.ids = ids;
+            this.count = count;
+        }
+    }
+
+    private static final class Key {
+        private final long projectId;
+        private final Long versionId;
+        private final Set<Report.Status> statuses;
+        private final Long assigneeId;
+        private final ReportSort sort;
+
+        private Key(long projectId, Long versionId, Set<Report.Status> statuses, Long assigneeId, ReportSort sort) {
+            this.projectId = projectId;
+            this.versionId = versionId;
+            this.statuses = statuses;
+            this.assigneeId = assigneeId;
+            this.sort = sort;
+        }
+
+        static Key of(ReportFilter filter, ReportSort sort) {
+            return new Key(filter.getProject().getId(),
+                    filter.getProjectVersion() != null ? filter.getProjectVersion().getId() : null,
+                    filter.getStatuses().isEmpty()
+                            ? Collections.emptySet()
+                            : Collections.unmodifiableSet(EnumSet.copyOf(filter.getStatuses())),
+                    filter.getAssignee() != null ? filter.getAssignee().getId() : null,
+                    sort);
+        }
+
+        /**
+         * @return whether a report in the given state is part of the result
+         */
+        boolean matches(ReportState state) {
+            return state != null
+                    && projectId == state.getProjectId()
+                    && (versionId == null || versionId.equals(state.getVersionId()))
+                    && (statuses.isEmpty() || statuses.contains(state.getStatus()))
+                    && (assigneeId == null || assigneeId.equals(state.getAssignedId()));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return projectId == key.projectId
+                    && Objects.equals(versionId, key.versionId)
+                    && statuses.equals(key.statuses)
+                    && Objects.equals(assigneeId, key.assigneeId)
+                    && sort.equals(key.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, versionId, statuses, assigneeId, sort);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * The columns of a report as read from the REPORT table, with references left as ids.
+ */
+public class ReportRow implements Serializable {
+
+    private final long id;
+    private final long projectId;
+    private final Long versionId;
+    private final Report.Type type;
+    private final Report.Priority priority;
+    private final Report.Status status;
+    private final String summary;
+    private final String description;
+    private final Long authorId;
+    private final Long assignedId;
+    private final Date reported;
+    private final Date timestamp;
+    private final int commentCount;
+
+    public ReportRow(long id, long projectId, Long versionId, Report.Type type, Report.Priority priority,
+                     Report.Status status, String summary, String description, Long authorId, Long assignedId,
+                     Date reported, Date timestamp, int commentCount) {
+        this.id = id;
+        this.projectId = projectId;
+        this.versionId = versionId;
+        this.type = type;
+        this.priority = priority;
+        this.status = status;
+        this.summary = summary;
+        this.description = description;
+        this.authorId = authorId;
+        this.assignedId = assignedId;
+        this.reported = reported;
+        this.timestamp = timestamp;
+        this.commentCount = commentCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public Long getVersionId() {
+        return versionId;
+    }
+
+    public Report.Type getType() {
+        return type;
+    }
+
+    public Report.Priority getPriority() {
+        return priority;
+    }
+
+    public Report.Status getStatus() {
+        return status;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public Long getAssignedId() {
+        return assignedId;
+    }
+
+    public Date getReported() {
+        return reported;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+}
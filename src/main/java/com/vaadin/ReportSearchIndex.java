@@ -0,0 +1,271 @@
+package com.vaadin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory inverted index over report summaries, descriptions and comments.
+ * <p>
+ * Every query token is matched as a prefix, so the index can be queried while the
+ * user types. A report matches when it matches all query tokens, and matches are
+ * ranked by field-weighted term frequency times inverse document frequency.
+ * <p>
+ * Reports are numbered densely in the order they are added, which lets postings be
+ * kept as sorted primitive arrays and lets a search score into plain arrays.
+ */
+public class ReportSearchIndex {
+
+    static final int MIN_TOKEN_LENGTH = 2;
+    static final int MAX_TOKEN_LENGTH = 40;
+
+    private static final float SUMMARY_WEIGHT = 3;
+    private static final float DESCRIPTION_WEIGHT = 1;
+    private static final float COMMENT_WEIGHT = 1;
+
+    private static final float PREFIX_MATCH_BOOST = 0.5f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Integer> documentNumbers = new HashMap<>();
+    private long[] reportIds = new long[1024];
+    private int documentCount;
+
+    /**
+     * Splits the text into lower case tokens of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TOKEN_LENGTH && length <= MAX_TOKEN_LENGTH) {
+                    tokens.add(text.substring(start, i).toLowerCase());
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            documentNumbers.clear();
+            reportIds = new long[1024];
+            documentCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addReport(long reportId, String summary, String description) {
+        Map<String, Float> weights = weigh(summary, description);
+
+        lock.writeLock().lock();
+        try {
+            apply(documentNumber(reportId), weights);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addComment(long reportId, String comment) {
+        Map<String, Float> weights = new HashMap<>();
+        addWeights(weights, comment, COMMENT_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            apply(documentNumber(reportId), weights);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching reports, best match first.
+     */
+    public List<Long> search(String text, int maxResults) {
+        return search(text, reportId -> true, maxResults);
+    }
+
+    /**
+     * Returns the ids of the best matching reports accepted by the filter, best match
+     * first. Reports are filtered before they are ranked, so {@code maxResults} only
+     * drops the worst of the accepted matches.
+     */
+    public List<Long> search(String text, LongPredicate accept, int maxResults) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(text)));
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            float[] scores = new float[documentCount];
+            int[] matchedTokens = new int[documentCount];
+
+            for (int token = 0; token < tokens.size(); token++) {
+                scoreToken(tokens.get(token), token, scores, matchedTokens);
+            }
+
+            return topDocuments(tokens.size(), scores, matchedTokens, accept, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every index term starting with the token. The postings are in memory, so
+     * even short prefixes are expanded completely rather than losing matches.
+     */
+    private void scoreToken(String token, int tokenIndex, float[] scores, int[] matchedTokens) {
+        for (Map.Entry<String, Postings> entry : terms.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+            Postings postings = entry.getValue();
+            float idf = (float) Math.log(1 + (double) documentCount / postings.size);
+            float boost = entry.getKey().length() == token.length() ? 1 : PREFIX_MATCH_BOOST;
+
+            for (int i = 0; i < postings.size; i++) {
+                int document = postings.documents[i];
+                // A report has to match every previous token to stay a candidate
+                if (matchedTokens[document] == tokenIndex) {
+                    matchedTokens[document] = tokenIndex + 1;
+                } else if (matchedTokens[document] != tokenIndex + 1) {
+                    continue;
+                }
+                scores[document] += boost * idf * (1 + (float) Math.log(postings.weights[i]));
+            }
+        }
+    }
+
+    private List<Long> topDocuments(int tokenCount, float[] scores, int[] matchedTokens, LongPredicate accept, int maxResults) {
+        PriorityQueue<Integer> best = new PriorityQueue<>(maxResults + 1,
+                (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Long.compare(reportIds[a], reportIds[b]));
+
+        for (int document = 0; document < scores.length; document++) {
+            if (matchedTokens[document] != tokenCount) {
+                continue;
+            }
+            if (best.size() == maxResults && best.comparator().compare(document, best.peek()) <= 0) {
+                continue;
+            }
+            if (!accept.test(reportIds[document])) {
+                continue;
+            }
+            best.add(document);
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+
+        Long[] ranked = new Long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = reportIds[best.poll()];
+        }
+        return Arrays.asList(ranked);
+    }
+
+    private static Map<String, Float> weigh(String summary, String description) {
+        Map<String, Float> weights = new HashMap<>();
+        addWeights(weights, summary, SUMMARY_WEIGHT);
+        addWeights(weights, description, DESCRIPTION_WEIGHT);
+        return weights;
+    }
+
+    private static void addWeights(Map<String, Float> weights, String text, float weight) {
+        for (String token : tokenize(text)) {
+            weights.merge(token, weight, Float::sum);
+        }
+    }
+
+    private int documentNumber(long reportId) {
+        Integer document = documentNumbers.get(reportId);
+        if (document != null) {
+            return document;
+        }
+
+        if (documentCount == reportIds.length) {
+            reportIds = Arrays.copyOf(reportIds, reportIds.length * 2);
+        }
+        reportIds[documentCount] = reportId;
+        documentNumbers.put(reportId, documentCount);
+        return documentCount++;
+    }
+
+    private void apply(int document, Map<String, Float> weights) {
+        for (Map.Entry<String, Float> entry : weights.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(document, entry.getValue());
+        }
+    }
+
+    /**
+     * Documents containing a term with their accumulated field weights, sorted by
+     * document number.
+     */
+    private static final class Postings {
+        private int[] documents = new int[2];
+        private float[] weights = new float[2];
+        private int size;
+
+        void add(int document, float weight) {
+            if (size > 0 && documents[size - 1] >= document) {
+                int index = Arrays.binarySearch(documents, 0, size, document);
+                if (index >= 0) {
+                    weights[index] += weight;
+                    return;
+                }
+                insert(-index - 1, document, weight);
+            } else {
+                insert(size, document, weight);
+            }
+        }
+
+        private void insert(int index, int document, float weight) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(documents, index, documents, index + 1, size - index);
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+            documents[index] = document;
+            weights[index] = weight;
+            size++;
+        }
+    }
+}
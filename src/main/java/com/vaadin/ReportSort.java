@@ -0,0 +1,82 @@
+package com.vaadin;
+
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.shared.data.sort.SortDirection;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Order of the report grid as an ORDER BY clause. Reports are always ordered by id
+ * last, so that pages of equal values are stable.
+ */
+public final class ReportSort implements Serializable {
+
+    public static final ReportSort BY_ID = new ReportSort(Collections.emptyList());
+
+    /**
+     * Sort properties of the grid columns and the REPORT columns they sort by
+     */
+    private static final Map<String, String> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("priority", "PRIORITY");
+        COLUMNS.put("type", "TYPE");
+        COLUMNS.put("timestamp", "TIMESTAMP");
+        COLUMNS.put("reportedTimestamp", "REPORTED");
+    }
+
+    private final List<String> orderBy;
+
+    private ReportSort(List<String> orderBy) {
+        this.orderBy = orderBy;
+    }
+
+    /**
+     * Sort orders on properties without a column are ignored.
+     */
+    public static ReportSort of(List<QuerySortOrder> sortOrders) {
+        List<String> orderBy = new ArrayList<>();
+        for (QuerySortOrder sortOrder : sortOrders) {
+            String column = COLUMNS.get(sortOrder.getSorted());
+            if (column != null) {
+                orderBy.add(column + (sortOrder.getDirection() == SortDirection.DESCENDING ? " DESC" : " ASC"));
+            }
+        }
+        return orderBy.isEmpty() ? BY_ID : new ReportSort(Collections.unmodifiableList(orderBy));
+    }
+
+    public boolean isById() {
+        return orderBy.isEmpty();
+    }
+
+    String toSql() {
+        StringJoiner sql = new StringJoiner(", ", " ORDER BY ", "");
+        orderBy.forEach(sql::add);
+        sql.add("ID");
+        return sql.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return orderBy.equals(((ReportSort) o).orderBy);
+    }
+
+    @Override
+    public int hashCode() {
+        return orderBy.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return isById() ? "ID" : String.join(", ", orderBy);
+    }
+}
@@ -0,0 +1,69 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The persisted values of the report fields the grid filters and statistics
+ * depend on, used to find out what a save actually changed.
+ */
+public class ReportState implements Serializable {
+
+    private final long id;
+    private final long projectId;
+    private final Long versionId;
+    private final Report.Status status;
+    private final Long assignedId;
+
+    public ReportState(long id, long projectId, Long versionId, Report.Status status, Long assignedId) {
+        this.id = id;
+        this.projectId = projectId;
+        this.versionId = versionId;
+        this.status = status;
+        this.assignedId = assignedId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public Long getVersionId() {
+        return versionId;
+    }
+
+    public Report.Status getStatus() {
+        return status;
+    }
+
+    public Long getAssignedId() {
+        return assignedId;
+    }
+
+    /**
+     * Whether the two states put the report into the same statistics buckets.
+     */
+    public boolean sameStatisticsAs(ReportState other) {
+        return other != null
+                && projectId == other.projectId
+                && Objects.equals(versionId, other.versionId)
+                && status == other.status
+                && (assignedId == null) == (other.assignedId == null);
+    }
+
+    /**
+     * Whether the two states match exactly the same report filters.
+     */
+    public boolean sameFilterFieldsAs(ReportState other) {
+        return other != null
+                && projectId == other.projectId
+                && Objects.equals(versionId, other.versionId)
+                && status == other.status
+                && Objects.equals(assignedId, other.assignedId);
+    }
+}
@@ -0,0 +1,60 @@
+package com.vaadin;
+
+import org.vaadin.bugrap.domain.entities.Report;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Report counts of a project or project version, bucketed by status and by whether
+ * the report is assigned.
+ * <p>
+ * Reports without a status count as {@link Report.Status#OPEN}, every other status
+ * is closed. Open reports are either opened (assigned) or unassigned, so closed,
+ * opened and unassigned add up to the total.
+ */
+public class ReportStatistics implements Serializable {
+
+    private final Map<Report.Status, Long> totalByStatus;
+    private final Map<Report.Status, Long> assignedByStatus;
+    private final long total;
+
+    public ReportStatistics(Map<Report.Status, Long> totalByStatus, Map<Report.Status, Long> assignedByStatus) {
+        this.totalByStatus = Collections.unmodifiableMap(new HashMap<>(totalByStatus));
+        this.assignedByStatus = Collections.unmodifiableMap(new HashMap<>(assignedByStatus));
+        this.total = totalByStatus.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param status the status, or {@code null} for reports without one
+     */
+    public long getCount(Report.Status status) {
+        return totalByStatus.getOrDefault(status, 0L);
+    }
+
+    public long getAssignedCount(Report.Status status) {
+        return assignedByStatus.getOrDefault(status, 0L);
+    }
+
+    public long getClosed() {
+        return total - getOpenTotal();
+    }
+
+    public long getOpened() {
+        return getAssignedCount(Report.Status.OPEN) + getAssignedCount(null);
+    }
+
+    public long getUnassigned() {
+        return getOpenTotal() - getOpened();
+    }
+
+    private long getOpenTotal() {
+        return getCount(Report.Status.OPEN) + getCount(null);
+    }
+}
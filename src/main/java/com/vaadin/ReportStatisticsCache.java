@@ -0,0 +1,80 @@
+package com.vaadin;
+
+import java.util.Objects;
+
+/**
+ * Caches {@link ReportStatistics} per project and per project version. Entries are
+ * dropped only when a saved report moves between statistics buckets.
+ */
+public class ReportStatisticsCache {
+
+    private static final int MAX_ENTRIES = 1_000;
+
+    private final ReportQueries reportQueries;
+    private final LruCache<Key, ReportStatistics> cache = new LruCache<>(MAX_ENTRIES);
+
+    public ReportStatisticsCache(ReportQueries reportQueries) {
+        this.reportQueries = reportQueries;
+    }
+
+    /**
+     * @param versionId the version, or {@code null} for the whole project
+     */
+    public ReportStatistics get(long projectId, Long versionId) {
+        return cache.get(new Key(projectId, versionId), key -> reportQueries.findStatistics(key.projectId, key.versionId));
+    }
+
+    /**
+     * @param before the state before the save, or {@code null} for a new report
+     * @param after  the state after the save
+     */
+    public void reportSaved(ReportState before, ReportState after) {
+        if (after.sameStatisticsAs(before)) {
+            return;
+        }
+
+        if (before != null) {
+            invalidate(before);
+        }
+        invalidate(after);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public LruCache<?, ?> getCache() {
+        return cache;
+    }
+
+    private void invalidate(ReportState state) {
+        cache.invalidate(new Key(state.getProjectId(), null));
+        if (state.getVersionId() != null) {
+            cache.invalidate(new Key(state.getProjectId(), state.getVersionId()));
+        }
+    }
+
+    private static final class Key {
+        private final long projectId;
+        private final Long versionId;
+
+        Key(long projectId, Long versionId) {
+            this.projectId = projectId;
+            this.versionId = versionId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+            return projectId == key.projectId && Objects.equals(versionId, key.versionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(projectId, versionId);
+        }
+    }
+}
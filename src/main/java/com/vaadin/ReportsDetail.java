@@ -1,18 +1,11 @@
 package com.vaadin;
 
-import com.vaadin.icons.VaadinIcons;
-import com.vaadin.server.FileDownloader;
-import com.vaadin.server.StreamResource;
 import com.vaadin.ui.*;
 import com.vaadin.ui.themes.ValoTheme;
 import org.vaadin.bugrap.domain.entities.*;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.text.DateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Created by diegocardoso on 3/31/17.
@@ -23,10 +16,10 @@ public class ReportsDetail extends ReportsDetailDesign {
     private Set<Report> reports;
     private ReportUpdateListener reportUpdateListener;
     private Report reportUpdating;
+    private final CommentThread commentThread;
 
     private Set<ProjectVersion> projectVersions;
 
-    final DateFormat dateTimeFormatter = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, Locale.ENGLISH);
     private Project project;
 
     public ReportsDetail(MyUI myUI, ReportUpdateListener listener) {
@@ -44,6 +37,10 @@ public class ReportsDetail extends ReportsDetailDesign {
         revertReportsBtn.addClickListener(e -> onClickRevertReport());
 
         openReportBtn.addClickListener(e -> onClickOpenReport());
+
+        commentThread = new CommentThread(myUI);
+        commentsSession.removeAllComponents();
+        commentsSession.addComponent(commentThread);
     }
 
     public void hideNewWindowButton() {
@@ -70,48 +67,80 @@ public class ReportsDetail extends ReportsDetailDesign {
     private void updateOneReport() {
         Report reportToUpdate = reports.iterator().next();
 
-        reportToUpdate.setPriority(priorityCombo.getValue());
-        reportToUpdate.setType(typeCombo.getValue());
-        reportToUpdate.setStatus(statusCombo.getValue());
-        reportToUpdate.setAssigned(assignedToCombo.getValue());
-        reportToUpdate.setVersion(versionCombo.getValue());
+        ReportEditResult result = saveEdit();
+        if (result == null) {
+            return;
+        }
 
-        reportToUpdate = myUI.saveReport(reportToUpdate);
+        // Shows what was saved, including changes other users made to the other fields
+        List<Report> reloaded = myUI.reloadReports(Collections.singleton(reportToUpdate.getId()));
+        if (reloaded.isEmpty()) {
+            Notification.show("Report was deleted by someone else", Notification.Type.WARNING_MESSAGE);
+            return;
+        }
+        reportToUpdate = reloaded.get(0);
         reportUpdateListener.onReportUpdate(reportToUpdate);
 
         Set<Report> updatedReports = new HashSet<>();
         updatedReports.add(reportToUpdate);
         setReports(updatedReports, this.project);
 
-        Notification.show("Report updated", Notification.Type.HUMANIZED_MESSAGE);
+        if (result.hasConflicts()) {
+            Notification.show("Report was changed by someone else",
+                    "Your changes were not saved, the report now shows the latest values", Notification.Type.WARNING_MESSAGE);
+        } else {
+            Notification.show("Report updated", Notification.Type.HUMANIZED_MESSAGE);
+        }
     }
 
     private void updateMultipleReports() {
+        ReportEditResult result = saveEdit();
+        if (result == null) {
+            return;
+        }
 
-        final Stream<Report> reportUpdatedStream = reports.stream().map(report -> {
-            if (priorityCombo.getValue() != null) report.setPriority(priorityCombo.getValue());
-            if (typeCombo.getValue() != null) report.setType(typeCombo.getValue());
-            if (statusCombo.getValue() != null) report.setStatus(statusCombo.getValue());
-            if (assignedToCombo.getValue() != null) report.setAssigned(assignedToCombo.getValue());
-            if (versionCombo.getValue() != null) report.setVersion(versionCombo.getValue());
-
-            return myUI.saveReport(report);
-        });
+        // Shows what was saved, including changes other users made to the other fields
+        Set<Report> updatedReports = new HashSet<>(myUI.reloadReports(
+                reports.stream().map(Report::getId).collect(Collectors.toList())));
+        reportUpdateListener.onReportsUpdate(updatedReports);
 
-        final Set<Report> reportsUpdated = reportUpdatedStream.collect(Collectors.toSet());
-        reportUpdateListener.onReportsUpdate(reportsUpdated);
+        setReports(updatedReports, this.project);
+        if (result.hasConflicts()) {
+            Notification.show(String.format("%d reports updated", result.getUpdated().size()),
+                    String.format("%d reports were changed by someone else and were not updated", result.getConflictingIds().size()),
+                    Notification.Type.WARNING_MESSAGE);
+        } else {
+            Notification.show(String.format("%d reports updated", result.getUpdated().size()), Notification.Type.HUMANIZED_MESSAGE);
+        }
+    }
 
-        setReports(reportsUpdated, this.project);
-        Notification.show("Reports updated", Notification.Type.HUMANIZED_MESSAGE);
+    /**
+     * Saves the fields changed in the combos.
+     *
+     * @return what was saved, or {@code null} if nothing was changed
+     */
+    private ReportEditResult saveEdit() {
+        ReportEdit edit = newEdit();
+        if (edit.isEmpty()) {
+            Notification.show("Nothing to update", Notification.Type.HUMANIZED_MESSAGE);
+            return null;
+        }
+        return myUI.updateReports(reports, edit);
+    }
 
+    private ReportEdit newEdit() {
+        return new ReportEdit(reportUpdating, priorityCombo.getValue(), typeCombo.getValue(), statusCombo.getValue(),
+                assignedToCombo.getValue(), versionCombo.getValue());
     }
 
     public void setReports(Set<Report> reports, Project project) {
         this.reports = reports;
-        this.project = project;
 
-        projectVersions = myUI.getVersionsByProject(project);
-        versionCombo.setItems(projectVersions.stream());
+        if (projectVersions == null || this.project == null || this.project.getId() != project.getId()) {
+            projectVersions = myUI.getVersionsByProject(project);
+            versionCombo.setItems(projectVersions);
+        }
+        this.project = project;
 
         if (reports.size() == 1) {
             showOneReportDetail();
@@ -127,14 +156,14 @@ public class ReportsDetail extends ReportsDetailDesign {
 
         reportSummary.setValue(reportSelected.getSummary());
 
-        List<Comment> commentList = myUI.getCommentsByReport(reportSelected);
+        int commentCount = myUI.getCommentCounts(Collections.singleton(reportSelected.getId()))
+                .getOrDefault(reportSelected.getId(), 0);
 
-        commentsSessionPanel.setVisible(false);
-
-        if (commentList.size() > 0) {
-            commentsSessionPanel.setVisible(true);
-            commentsSession.removeAllComponents();
-            commentList.forEach(comment -> commentsSession.addComponent(buildCommentComponent(comment)));
+        commentsSessionPanel.setVisible(commentCount > 0);
+        if (commentCount > 0) {
+            commentThread.showReport(reportSelected, commentCount);
+        } else {
+            commentThread.clear();
         }
 
         setCombosValues(reportSelected.getPriority(), reportSelected.getType(), reportSelected.getStatus(), reportSelected.getAssigned(), reportSelected.getVersion());
@@ -142,57 +171,6 @@ public class ReportsDetail extends ReportsDetailDesign {
         reportUpdating = reportSelected;
     }
 
-    private Component buildCommentComponent(Comment comment) {
-        HorizontalLayout root = new HorizontalLayout();
-        root.setMargin(false);
-        root.setSizeFull();
-        root.setWidth("100%");
-        root.setSpacing(true);
-        root.addStyleName("report-comments");
-
-        Label userIcon = new Label();
-        userIcon.setIcon(VaadinIcons.USER);
-        userIcon.addStyleName("report-comments-icon");
-
-        VerticalLayout commentsArea = new VerticalLayout();
-        commentsArea.setMargin(false);
-        commentsArea.setSizeFull();
-        commentsArea.setSpacing(false);
-
-        Label commentTitle = new Label(String.format("%s (%s)", comment.getAuthor(), dateTimeFormatter.format(comment.getTimestamp())));
-        commentTitle.addStyleName("report-comments-title");
-
-        Label commentText = new Label(comment.getComment());
-        commentText.addStyleName("report-comments-text");
-
-        commentsArea.addComponents(commentTitle, commentText);
-
-        if (comment.getAttachmentName() != null) {
-            commentsArea.addComponents(createDownloadAttachmentButton(comment));
-        }
-
-        root.addComponents(userIcon, commentsArea);
-        root.setExpandRatio(commentsArea, 1);
-
-        return root;
-    }
-
-    private Button createDownloadAttachmentButton(Comment comment) {
-        Button attachmentBtn = new Button(comment.getAttachmentName());
-        attachmentBtn.addStyleName(ValoTheme.BUTTON_BORDERLESS);
-        attachmentBtn.setIcon(VaadinIcons.PAPERCLIP);
-
-        StreamResource resource = createResource(comment.getAttachment(), comment.getAttachmentName());
-        FileDownloader fileDownloader = new FileDownloader(resource);
-        fileDownloader.extend(attachmentBtn);
-
-        return attachmentBtn;
-    }
-
-    private StreamResource createResource(byte[] attachment, String fileName) {
-        return new StreamResource(() -> new ByteArrayInputStream(attachment), fileName);
-    }
-
     private void showMultipleReportsDetails() {
         oneItemSelectedTitleContainer.setVisible(false);
         multipleItemsSelectedTitleContainer.setVisible(true);
@@ -1,8 +1,9 @@
 package com.vaadin;
 
-import com.vaadin.annotations.AutoGenerated;
-import com.vaadin.annotations.DesignRoot;
-import com.vaadin.ui.declarative.Design;
+import com.vaadin.icons.VaadinIcons;
+import com.vaadin.shared.ui.ContentMode;
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.Component;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.ComboBox;
@@ -11,17 +12,21 @@ import com.vaadin.ui.Label;
 import com.vaadin.ui.Panel;
 
 /**
- * !! DO NOT EDIT THIS FILE !!
+ * The components of {@code ReportsDetailDesign.html}, built in code instead of with
+ * {@code Design.read}. The report details are created for the main page and for every
+ * opened report, so this keeps HTML parsing and reflective field binding out of both.
  * <p>
- * This class is generated by Vaadin Designer and will be overwritten.
+ * Keep in sync with the design: Vaadin Designer regenerates this class with
+ * {@code Design.read} when the design is saved.
  * <p>
  * Please make a subclass with logic and additional interfaces as needed,
  * e.g class LoginView extends LoginDesign implements View { }
  */
-@DesignRoot
-@AutoGenerated
 @SuppressWarnings("serial")
 public class ReportsDetailDesign extends VerticalLayout {
+
+    private static final VaadinIcons OPEN_REPORT_ICON = DesignIcons.vaadinIcon(0xe7de);
+
     protected HorizontalLayout oneItemSelectedTitleContainer;
     protected Button openReportBtn;
     protected Label reportSummary;
@@ -39,8 +44,101 @@ public class ReportsDetailDesign extends VerticalLayout {
     protected VerticalLayout commentsSession;
 
     public ReportsDetailDesign() {
-        Design.read(this);
+        setStyleName("reports-detail");
+        setSpacing(false);
+        setSizeFull();
+        setMargin(false);
+
+        buildOneItemSelectedTitle();
+        buildMultipleItemsSelectedTitle();
+        buildUpdateReportForm();
+
+        commentsSessionPanel = new Panel();
+        commentsSessionPanel.setStyleName("report-comments");
+        commentsSessionPanel.setSizeUndefined();
+
+        commentsSession = new VerticalLayout();
+        commentsSession.setStyleName("reports-comments-container");
+        commentsSession.setSizeFull();
+        commentsSessionPanel.setContent(commentsSession);
+
+        addComponent(commentsSessionPanel);
+        setExpandRatio(commentsSessionPanel, 1);
     }
 
+    private void buildOneItemSelectedTitle() {
+        oneItemSelectedTitleContainer = new HorizontalLayout();
+        oneItemSelectedTitleContainer.setStyleName("report-title");
+        oneItemSelectedTitleContainer.setWidth("100%");
+
+        openReportBtn = new Button("");
+        openReportBtn.setIcon(OPEN_REPORT_ICON);
+        openReportBtn.setStyleName("borderless small");
+        oneItemSelectedTitleContainer.addComponent(openReportBtn);
+
+        reportSummary = new Label("Report selected", ContentMode.TEXT);
+        reportSummary.setStyleName("bold");
+        oneItemSelectedTitleContainer.addComponent(reportSummary);
+        oneItemSelectedTitleContainer.setComponentAlignment(reportSummary, Alignment.MIDDLE_LEFT);
+        oneItemSelectedTitleContainer.setExpandRatio(reportSummary, 1);
+
+        addComponent(oneItemSelectedTitleContainer);
+    }
+
+    private void buildMultipleItemsSelectedTitle() {
+        multipleItemsSelectedTitleContainer = new HorizontalLayout();
+        multipleItemsSelectedTitleContainer.setStyleName("report-title");
+        multipleItemsSelectedTitleContainer.setWidth("100%");
+
+        numberOfReportsSelected = new Label("2 reports selected", ContentMode.TEXT);
+        numberOfReportsSelected.setStyleName("bold");
+        multipleItemsSelectedTitleContainer.addComponent(numberOfReportsSelected);
+        multipleItemsSelectedTitleContainer.setComponentAlignment(numberOfReportsSelected, Alignment.MIDDLE_LEFT);
+
+        Label hint = new Label("- Select a single report to view contents", ContentMode.TEXT);
+        hint.setStyleName("small");
+        multipleItemsSelectedTitleContainer.addComponent(hint);
+        multipleItemsSelectedTitleContainer.setComponentAlignment(hint, Alignment.MIDDLE_LEFT);
+        multipleItemsSelectedTitleContainer.setExpandRatio(hint, 1);
 
+        addComponent(multipleItemsSelectedTitleContainer);
+        setComponentAlignment(multipleItemsSelectedTitleContainer, Alignment.MIDDLE_LEFT);
+    }
+
+    private void buildUpdateReportForm() {
+        updateReportFormContainer = new HorizontalLayout();
+        updateReportFormContainer.setStyleName("report-form");
+        updateReportFormContainer.setSizeFull();
+
+        priorityCombo = addFormCombo("Priority");
+        typeCombo = addFormCombo("Type");
+        statusCombo = addFormCombo("Status");
+        assignedToCombo = addFormCombo("Assigned to");
+        versionCombo = addFormCombo("Version");
+
+        updateReportsBtn = addFormButton("Update");
+        revertReportsBtn = addFormButton("Revert");
+
+        addComponent(updateReportFormContainer);
+        setComponentAlignment(updateReportFormContainer, Alignment.MIDDLE_CENTER);
+        setExpandRatio(updateReportFormContainer, 1);
+    }
+
+    private <T> ComboBox<T> addFormCombo(String caption) {
+        ComboBox<T> combo = new ComboBox<>(caption);
+        addToForm(combo);
+        updateReportFormContainer.setExpandRatio(combo, 1);
+        return combo;
+    }
+
+    private Button addFormButton(String caption) {
+        Button button = new Button(caption);
+        addToForm(button);
+        return button;
+    }
+
+    private void addToForm(Component component) {
+        updateReportFormContainer.addComponent(component);
+        updateReportFormContainer.setComponentAlignment(component, Alignment.BOTTOM_LEFT);
+    }
 }
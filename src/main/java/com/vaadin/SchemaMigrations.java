@@ -0,0 +1,172 @@
+package com.vaadin;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Idempotent additions to the schema the repository creates, applied once at startup.
+ */
+class SchemaMigrations {
+
+    /**
+     * The tables holding the long texts and attachments, and growing with the data.
+     */
+    private static final String[] LARGE_TABLES = {"REPORT", "COMMENT"};
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrations.class.getName());
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * @param cachedTables whether the large tables are kept on disk, with only the
+     *                     most recently used rows in memory
+     * @param cacheSizeKb  the size of that buffer of rows
+     */
+    static void migrate(ConnectionPool connectionPool, boolean cachedTables, int cacheSizeKb) {
+        connectionPool.execute(connection -> {
+            setStorage(connection, cachedTables, cacheSizeKb);
+            addReportCommentCount(connection);
+            addCommentAttachmentReference(connection);
+            addIndexes(connection);
+            addImportTables(connection);
+            return null;
+        });
+    }
+
+    /**
+     * MEMORY tables are read completely into the heap when the database is opened,
+     * CACHED tables are read from the data file through a bounded buffer.
+     */
+    private static void setStorage(Connection connection, boolean cachedTables, int cacheSizeKb) throws SQLException {
+        String type = cachedTables ? "CACHED" : "MEMORY";
+
+        try (Statement statement = connection.createStatement()) {
+            if (cachedTables) {
+                statement.execute("SET FILES CACHE SIZE " + cacheSizeKb);
+            }
+
+            for (String table : LARGE_TABLES) {
+                if (!type.equals(tableType(connection, table))) {
+                    LOGGER.info("Converting table " + table + " to " + type + ", this may take a while");
+                    statement.execute("SET TABLE " + table + " TYPE " + type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes for the filters of the report grid, the statistics and the comment
+     * thread. The version index also serves the project-only filter, the assignee
+     * index the "only me" filter over all versions. The sort indexes let a sorted page
+     * of a whole project be read without sorting all of its reports.
+     */
+    private static void addIndexes(Connection connection) throws SQLException {
+        addIndex(connection, "REPORT", "IDX_REPORT_VERSION", "PROJECT_ID, VERSION_ID, STATUS, ASSIGNED_ID");
+        addIndex(connection, "REPORT", "IDX_REPORT_ASSIGNED", "PROJECT_ID, ASSIGNED_ID, STATUS");
+        addIndex(connection, "REPORT", "IDX_REPORT_PRIORITY", "PROJECT_ID, PRIORITY, ID");
+        addIndex(connection, "REPORT", "IDX_REPORT_TIMESTAMP", "PROJECT_ID, TIMESTAMP, ID");
+        addIndex(connection, "REPORT", "IDX_REPORT_REPORTED", "PROJECT_ID, REPORTED, ID");
+        addIndex(connection, "COMMENT", "IDX_COMMENT_REPORT", "REPORT_ID, TIMESTAMP, ID");
+    }
+
+    /**
+     * Denormalized number of comments per report, so checking whether a report has
+     * comments does not load them.
+     */
+    private static void addReportCommentCount(Connection connection) throws SQLException {
+        if (hasColumn(connection, "REPORT", "COMMENTCOUNT")) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE REPORT ADD COLUMN COMMENTCOUNT INTEGER DEFAULT 0 NOT NULL");
+            statement.execute("UPDATE REPORT SET COMMENTCOUNT = "
+                    + "(SELECT COUNT(*) FROM COMMENT WHERE COMMENT.REPORT_ID = REPORT.ID)");
+        }
+    }
+
+    /**
+     * Attachment contents live in the {@link AttachmentStore}, comments only reference
+     * them by content hash.
+     */
+    private static void addCommentAttachmentReference(Connection connection) throws SQLException {
+        if (hasColumn(connection, "COMMENT", "ATTACHMENTHASH")) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE COMMENT ADD COLUMN ATTACHMENTHASH VARCHAR(64)");
+            statement.execute("ALTER TABLE COMMENT ADD COLUMN ATTACHMENTSIZE BIGINT");
+        }
+    }
+
+    /**
+     * The ids given to imported rows, by kind and id in the source system, and how far
+     * each import file got, see {@link ReportImporter}.
+     */
+    private static void addImportTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (!hasTable(connection, "IMPORTEDID")) {
+                statement.execute("CREATE CACHED TABLE IMPORTEDID (KIND VARCHAR(16) NOT NULL, "
+                        + "EXTERNALID VARCHAR(255) NOT NULL, ID BIGINT NOT NULL, PRIMARY KEY (KIND, EXTERNALID))");
+            }
+            if (!hasTable(connection, "IMPORTCHECKPOINT")) {
+                statement.execute("CREATE MEMORY TABLE IMPORTCHECKPOINT (SOURCE VARCHAR(1024) NOT NULL PRIMARY KEY, "
+                        + "LINENUMBER BIGINT NOT NULL, IMPORTED BIGINT NOT NULL, REJECTED BIGINT NOT NULL)");
+            }
+        }
+    }
+
+    private static void addIndex(Connection connection, String table, String index, String columns) throws SQLException {
+        if (hasIndex(connection, table, index)) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(null, "PUBLIC", table, false, false)) {
+            while (indexes.next()) {
+                if (index.equals(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static String tableType(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT HSQLDB_TYPE FROM INFORMATION_SCHEMA.SYSTEM_TABLES "
+                + "WHERE TABLE_SCHEM = 'PUBLIC' AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    static boolean hasTable(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(null, "PUBLIC", table, null)) {
+            return tables.next();
+        }
+    }
+
+    static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(null, "PUBLIC", table, column)) {
+            return columns.next();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.vaadin;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimated heap footprints of the instances of one view, sampled by
+ * {@link LazyViewProvider}.
+ */
+public class ViewFootprint implements ViewFootprintMBean {
+
+    private final String name;
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAccumulator maxBytes = new LongAccumulator(Math::max, 0);
+    private volatile long lastBytes;
+
+    ViewFootprint(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void record(long bytes) {
+        samples.increment();
+        totalBytes.add(bytes);
+        maxBytes.accumulate(bytes);
+        lastBytes = bytes;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return samples.sum();
+    }
+
+    @Override
+    public long getMeanBytes() {
+        long count = samples.sum();
+        return count == 0 ? 0 : totalBytes.sum() / count;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes.get();
+    }
+
+    @Override
+    public long getLastBytes() {
+        return lastBytes;
+    }
+}
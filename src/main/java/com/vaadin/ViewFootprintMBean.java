@@ -0,0 +1,15 @@
+package com.vaadin;
+
+/**
+ * JMX view of the estimated heap footprint of one kind of view.
+ */
+public interface ViewFootprintMBean {
+
+    long getSampleCount();
+
+    long getMeanBytes();
+
+    long getMaxBytes();
+
+    long getLastBytes();
+}
@@ -0,0 +1,178 @@
+/*
+ * Client side of com.vaadin.ChunkedUploader. Sends the picked file in chunks to the
+ * ChunkedUploadHandler: POST starts an upload, each PUT appends a chunk with a
+ * Content-Range, and after a failed chunk a HEAD tells where to continue.
+ */
+window.com_vaadin_ChunkedUploader = function () {
+    var MAX_RETRIES = 5;
+    var RETRY_DELAY_MILLIS = 1000;
+
+    var connector = this;
+    var button = connector.getElement(connector.getParentId());
+    var input = document.createElement("input");
+    var upload = null;
+
+    input.type = "file";
+    input.style.display = "none";
+    document.body.appendChild(input);
+
+    button.addEventListener("click", function () {
+        if (!upload) {
+            input.value = "";
+            input.click();
+        }
+    });
+
+    input.addEventListener("change", function () {
+        if (input.files.length > 0) {
+            start(input.files[0]);
+        }
+    });
+
+    this.onUnregister = function () {
+        abort();
+        document.body.removeChild(input);
+    };
+
+    this.cancel = function () {
+        abort();
+    };
+
+    function start(file) {
+        if (file.size > connector.getState().maxFileSize) {
+            connector.onFailed("The file is too large");
+            return;
+        }
+
+        upload = {file: file, token: null, xhr: null, retries: 0, lastProgress: 0};
+        connector.onStarted(file.name);
+
+        send(upload, "POST", connector.getState().url + "?name=" + encodeURIComponent(file.name), {}, null,
+            function (xhr) {
+                if (xhr.status === 429) {
+                    return fail(upload, "Too many uploads in progress");
+                }
+                if (xhr.status !== 201) {
+                    return fail(upload, "Could not start the upload (" + xhr.status + ")");
+                }
+                upload.token = xhr.responseText.trim();
+                sendChunk(upload, 0);
+            });
+    }
+
+    function sendChunk(current, first) {
+        var size = current.file.size;
+        var last = Math.min(first + connector.getState().chunkSize, size) - 1;
+        // An empty file has no byte range, only its total
+        var range = size === 0 ? "bytes */0" : "bytes " + first + "-" + last + "/" + size;
+
+        send(current, "PUT", uploadUrl(current), {"Content-Range": range},
+            current.file.slice(first, last + 1),
+            function (xhr) {
+                var received = receivedBytes(xhr);
+                if (xhr.status === 201 || (xhr.status === 409 && received === size)) {
+                    finish(current);
+                } else if (xhr.status === 413) {
+                    fail(current, "The file is too large");
+                } else if (xhr.status === 308 || xhr.status === 409) {
+                    current.retries = 0;
+                    progress(current, received);
+                    sendChunk(current, received);
+                } else {
+                    retry(current);
+                }
+            });
+    }
+
+    /**
+     * Asks how much of the file arrived and continues from there.
+     */
+    function retry(current) {
+        if (current.retries++ === MAX_RETRIES) {
+            return fail(current, "The upload was interrupted");
+        }
+        setTimeout(function () {
+            send(current, "HEAD", uploadUrl(current), {}, null, function (xhr) {
+                if (xhr.status === 200) {
+                    finish(current);
+                } else if (xhr.status === 308) {
+                    sendChunk(current, receivedBytes(xhr));
+                } else if (xhr.status === 404) {
+                    fail(current, "The upload has expired");
+                } else {
+                    retry(current);
+                }
+            });
+        }, RETRY_DELAY_MILLIS * current.retries);
+    }
+
+    function send(current, method, url, headers, body, onLoad) {
+        if (upload !== current) {
+            return;
+        }
+        var xhr = new XMLHttpRequest();
+        current.xhr = xhr;
+        xhr.open(method, url);
+        for (var name in headers) {
+            xhr.setRequestHeader(name, headers[name]);
+        }
+        xhr.onload = function () {
+            if (upload === current) {
+                onLoad(xhr);
+            }
+        };
+        xhr.onerror = function () {
+            if (upload === current) {
+                current.token ? retry(current) : fail(current, "Could not start the upload");
+            }
+        };
+        xhr.send(body);
+    }
+
+    function progress(current, received) {
+        var now = Date.now();
+        if (now - current.lastProgress >= connector.getState().progressIntervalMillis) {
+            current.lastProgress = now;
+            connector.onProgress(received, current.file.size);
+        }
+    }
+
+    function receivedBytes(xhr) {
+        var range = xhr.getResponseHeader("Range");
+        var match = range && /bytes=0-(\d+)/.exec(range);
+        return match ? parseInt(match[1], 10) + 1 : 0;
+    }
+
+    function uploadUrl(current) {
+        return connector.getState().url + "/" + current.token;
+    }
+
+    function finish(current) {
+        upload = null;
+        connector.onProgress(current.file.size, current.file.size);
+        connector.onFinished(current.token);
+    }
+
+    function fail(current, message) {
+        if (upload === current) {
+            upload = null;
+            connector.onFailed(message);
+        }
+    }
+
+    function abort() {
+        var current = upload;
+        upload = null;
+        if (!current) {
+            return;
+        }
+        if (current.xhr) {
+            current.xhr.abort();
+        }
+        if (current.token) {
+            var xhr = new XMLHttpRequest();
+            xhr.open("DELETE", uploadUrl(current));
+            xhr.send();
+        }
+    }
+};